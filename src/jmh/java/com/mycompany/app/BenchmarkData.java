@@ -0,0 +1,17 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Synthetic assessment CSVs for the benchmarks, generated once per size and seed and then reused
+public class BenchmarkData {
+    // Methods:
+    public static Path csv(int rows, long seed) throws IOException {
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "assessments-" + rows + "-" + seed + ".csv");
+        if (!Files.exists(file)) {
+            new SyntheticDataset(seed).write(file, rows);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,87 @@
+package com.mycompany.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Full scans over the property columns, the access pattern of statistics, clustering and spatial
+// queries. sumPlainValues is the baseline: the same sum over a long[].
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ColumnScanBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private PropertyColumns columns;
+    private long[] plainValues;
+    private final long[] block = new long[1024];
+
+    @Setup
+    public void loadData() throws IOException {
+        PropertyAssessments properties = new PropertyAssessments(BenchmarkData.csv(rows, 42).toString());
+        columns = properties.getColumns();
+        plainValues = DatasetSnapshot.assessedValuesOf(properties.getProperties());
+    }
+
+    @Benchmark
+    public long sumPlainValues() {
+        long sum = 0;
+        for (long value : plainValues) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sumCopiedValues() {
+        long sum = 0;
+        for (int from = 0; from < columns.size(); from += block.length) {
+            int count = Math.min(block.length, columns.size() - from);
+            columns.getAssessedValues(from, block, count);
+            for (int i = 0; i < count; i++) {
+                sum += block[i];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sumValues() {
+        long sum = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            sum += columns.getAssessedValue(row);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int countInEnvelope() {
+        // Roughly downtown Edmonton, in Web Mercator meters
+        double minX = WebMercator.x(-113.53), maxX = WebMercator.x(-113.46);
+        double minY = WebMercator.y(53.52), maxY = WebMercator.y(53.56);
+        int count = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            double x = columns.getX(row);
+            double y = columns.getY(row);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
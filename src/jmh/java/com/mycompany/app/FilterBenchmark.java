@@ -0,0 +1,84 @@
+package com.mycompany.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Each filter type the app offers, run through the planner as the filter panel and area search do
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private PropertyAssessments properties;
+    private SelectionPolygon area;
+
+    @Setup
+    public void loadData() throws IOException {
+        properties = new PropertyAssessments(BenchmarkData.csv(rows, 42).toString());
+        properties.getColumnStatistics(); // Built once in the app too, so keep it out of the timings
+
+        area = new SelectionPolygon();
+        area.addRing(new double[]{-113.55, -113.45, -113.45, -113.55}, new double[]{53.50, 53.50, 53.57, 53.57});
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> neighborhood() {
+        return properties.filter(FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "MILL CREEK"));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> ward() {
+        return properties.filter(FilterExpression.equalTo(FilterExpression.Field.WARD, "Karhiio Ward"));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> assessmentClass() {
+        return properties.filter(FilterExpression.equalTo(FilterExpression.Field.ASSESSMENT_CLASS, "COMMERCIAL"));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> garage() {
+        return properties.filter(FilterExpression.equalTo(FilterExpression.Field.GARAGE, "Y"));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> valueAbove() {
+        return properties.filter(FilterExpression.valueAbove(500000));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> addressContains() {
+        return properties.filter(FilterExpression.textContains(FilterExpression.Field.ADDRESS, "crescent"));
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> area() {
+        return properties.getPropertiesInPolygon(area);
+    }
+
+    @Benchmark
+    public List<PropertyAssessment> combined() {
+        return properties.filter(FilterExpression.and(
+                FilterExpression.equalTo(FilterExpression.Field.WARD, "Karhiio Ward"),
+                FilterExpression.equalTo(FilterExpression.Field.GARAGE, "Y"),
+                FilterExpression.valueBetween(300000, 600000)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The data side of putting properties on the map: projecting locations, turning a filter result
+// into rows, diffing visibility and clustering. The ArcGIS graphics themselves need the native
+// runtime, so they are left out.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphicPreparationBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private PropertyAssessments properties;
+    private PropertyOverlay overlay;
+    private List<PropertyAssessment> filtered;
+    private BitSet filteredRows;
+    private int[] allRows;
+
+    @Setup
+    public void loadData() throws IOException {
+        properties = new PropertyAssessments(BenchmarkData.csv(rows, 42).toString());
+        overlay = new PropertyOverlay(null, properties.getProperties(), properties.getColumns()); // Only row bookkeeping is used
+        filtered = properties.filter(FilterExpression.equalTo(FilterExpression.Field.WARD, "Karhiio Ward"));
+        filteredRows = overlay.rowsOf(filtered);
+        allRows = overlay.allRows().stream().toArray();
+    }
+
+    @Benchmark
+    public PropertyColumns projectLocations() {
+        return new PropertyColumns(properties.getProperties());
+    }
+
+    @Benchmark
+    public BitSet rowsOfFilterResult() {
+        return overlay.rowsOf(filtered);
+    }
+
+    @Benchmark
+    public BitSet visibilityDiff() {
+        return overlay.changedRows(filteredRows);
+    }
+
+    @Benchmark
+    public ClusterIndex clusterAllRows() {
+        return ClusterIndex.build(properties.getColumns(), allRows, () -> false);
+    }
+}
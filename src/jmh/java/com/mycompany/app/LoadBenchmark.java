@@ -0,0 +1,41 @@
+package com.mycompany.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// CSV parse throughput: loadData, addProperty and the column projection behind new PropertyAssessments(file)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path csv;
+
+    @Setup
+    public void writeData() throws IOException {
+        csv = BenchmarkData.csv(rows, 42);
+    }
+
+    @Benchmark
+    public PropertyAssessments load() throws IOException {
+        return new PropertyAssessments(csv.toString());
+    }
+}
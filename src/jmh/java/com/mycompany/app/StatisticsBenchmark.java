@@ -0,0 +1,71 @@
+package com.mycompany.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Account lookup and each of the whole-dataset statistics shown in the app
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatisticsBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private PropertyAssessments properties;
+    private int[] accountIDs;
+    private int next;
+
+    @Setup
+    public void loadData() throws IOException {
+        properties = new PropertyAssessments(BenchmarkData.csv(rows, 42).toString());
+
+        // Random existing accounts, so lookups don't walk the map in insertion order
+        Random random = new Random(7);
+        accountIDs = new int[4096];
+        for (int i = 0; i < accountIDs.length; i++) {
+            accountIDs[i] = properties.getProperties().get(random.nextInt(rows)).getAccountID();
+        }
+    }
+
+    @Benchmark
+    public PropertyAssessment accountLookup() {
+        next = (next + 1) & (accountIDs.length - 1);
+        return properties.getPropertyByAccountID(accountIDs[next]);
+    }
+
+    @Benchmark
+    public long min() {
+        return properties.getMinValue();
+    }
+
+    @Benchmark
+    public long max() {
+        return properties.getMaxValue();
+    }
+
+    @Benchmark
+    public long mean() {
+        return properties.getMean();
+    }
+
+    @Benchmark
+    public long median() {
+        return properties.getMedian();
+    }
+}
@@ -18,15 +18,30 @@ package com.mycompany.app;
 
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.Geometry;
+import com.esri.arcgisruntime.geometry.GeometryEngine;
+import com.esri.arcgisruntime.geometry.GeometryType;
+import com.esri.arcgisruntime.geometry.ImmutablePart;
 import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.PointCollection;
+import com.esri.arcgisruntime.geometry.Polygon;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
+import com.esri.arcgisruntime.layers.WebTiledLayer;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.IdentifyGraphicsOverlayResult;
+import com.esri.arcgisruntime.mapping.view.ImageFrame;
+import com.esri.arcgisruntime.mapping.view.ImageOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
+import com.esri.arcgisruntime.mapping.view.geometryeditor.GeometryEditor;
+import com.esri.arcgisruntime.symbology.SimpleFillSymbol;
+import com.esri.arcgisruntime.symbology.SimpleLineSymbol;
+import com.esri.arcgisruntime.symbology.ClassBreaksRenderer;
 import com.esri.arcgisruntime.symbology.SimpleMarkerSymbol;
+import com.esri.arcgisruntime.symbology.TextSymbol;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -38,19 +53,24 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javafx.scene.chart.PieChart;
 
@@ -61,8 +81,36 @@ public class App extends Application {
     private final Integer minScreenWidth = 800;
     private final Integer minScreenHeight = 600;
 
+    // Run with -DviewportCulling=true to only create graphics for properties near the visible area
+    private final boolean viewportCulling = Boolean.getBoolean("viewportCulling");
+    private final int maxLiveGraphics = 20000;
+
+    // Run with -DtilePyramid=true to draw the unfiltered properties from pre-rendered tiles when zoomed out
+    private final boolean tilePyramid = Boolean.getBoolean("tilePyramid");
+    private final Path tileDirectory = Path.of("tiles");
+
+    // Run with -DclickIdentify=true to resolve map clicks with the runtime's identify on the property
+    // overlay instead of the local spatial index, e.g. to compare their latency
+    private final boolean clickIdentify = Boolean.getBoolean("clickIdentify");
+    private final double clickTolerance = 10; // Device independent pixels
+
+    // The FX thread counts as stalled once a heartbeat has waited this long; -DfxStallMillis=0 turns the watchdog off
+    private final long fxStallMillis = Long.getLong("fxStallMillis", 250);
+    private final long fxHeartbeatMillis = 50;
+    private FxStallDetector fxStallDetector;
+
+    // Run with -DqueryServicePort=8085 to also serve lookups over HTTP on localhost (see QueryService)
+    private final Integer queryServicePort = Integer.getInteger("queryServicePort");
+    private QueryService queryService;
+
     private MapView mapView;
     private GraphicsOverlay graphicsOverlay;
+    private PropertyOverlay propertyOverlay;
+    private GraphicsOverlay selectionOverlay;
+    private GraphicsOverlay clusterOverlay;
+    private Graphic selectionGraphic;
+    private GraphicsOverlay areaOverlay;
+    private GeometryEditor geometryEditor;
 
     // Instance Variables
     private PropertyAssessments propertiesClass;
@@ -71,13 +119,21 @@ public class App extends Application {
 
     private TitledPane propertyGroupPane;
     private TitledPane accountNumberPane;
+    private TitledPane areaSearchPane;
+    private TitledPane heatmapPane;
+    private TitledPane diagnosticsPane;
 
     private Button filterButton;
     private ComboBox<String> filterDropdown;
     private ComboBox<String> valueDropdown;
     private TextField accountSearchInput;
     private Button removeFilterButton;
+    private Button exportButton;
     private Button accountSearchButton;
+    private Button drawAreaButton;
+    private Button loadAreaButton;
+    private CheckBox heatmapCheckBox;
+    private ComboBox<String> heatmapWeightingDropdown;
 
     private VBox statisticsPanel;
     private Label statisticsLabel;
@@ -94,6 +150,12 @@ public class App extends Application {
 
     private long assessedValueCenter;
 
+    // One marker symbol per color class, shared by every break of every renderer
+    private SimpleMarkerSymbol[] classSymbols;
+
+    // Opacity of the property overlay while a single property is highlighted
+    private static final float FADED_OVERLAY_OPACITY = 0.3f;
+
     private VBox legendPanel;
 
     private NumberFormat numberFormat;
@@ -102,6 +164,36 @@ public class App extends Application {
 
     private TextField centerInputField;
 
+    // Delay before a query starts, so a burst of clicks only runs the last one
+    private static final long QUERY_COALESCE_MILLIS = 100;
+    private QueryScheduler queryScheduler;
+
+    // Shared CPU and I/O pools that every background task runs on
+    private AppExecutors executors;
+
+    // Background work reports progress at most this often, so the FX thread isn't flooded with updates
+    private static final long PROGRESS_INTERVAL_MILLIS = 50;
+
+    // Clusters of the properties currently shown, rebuilt in the background whenever they change
+    private QueryScheduler clusterScheduler;
+    private ClusterIndex clusterIndex;
+    private MapSnapshot fullMapSnapshot; // The unfiltered map, kept so Remove Filters can restore it at once
+    private long fullDatasetMedian;
+    private final Map<Integer, List<Graphic>> clusterGraphicsByZoom = new HashMap<>();
+    private int displayedClusterZoom = -1; // -1 while individual properties are shown
+
+    // Heatmap of the shown properties, drawn as an image over the map. A density surface per
+    // weighting keeps its tiles, so switching back and forth doesn't start over.
+    private ImageOverlay heatmapOverlay;
+    private QueryScheduler heatmapScheduler;
+    private final Map<DensitySurface.Weighting, DensitySurface> densitySurfaces = new EnumMap<>(DensitySurface.Weighting.class);
+    private BitSet shownRows;
+
+    // Layer over the pre-rendered tiles, once they are up to date, and the center they were colored around
+    private WebTiledLayer tileLayer;
+    private long tileLayerCenter;
+    private boolean tilesDisplayed;
+
 
     public static void main(String[] args) {
         Application.launch(args);
@@ -121,17 +213,45 @@ public class App extends Application {
         // Create a StackPane as the root layout
         rootStackPane = new StackPane();
 
+        // Filters, highlights and map rebuilds all go through one scheduler so only the newest runs
+        executors = new AppExecutors();
+        queryScheduler = new QueryScheduler(executors.timer(), executors.cpu(), QUERY_COALESCE_MILLIS);
+        clusterScheduler = new QueryScheduler(executors.timer(), executors.cpu(), QUERY_COALESCE_MILLIS);
+        heatmapScheduler = new QueryScheduler(executors.timer(), executors.cpu(), QUERY_COALESCE_MILLIS);
+        Metrics.addSection("Executors", () -> executors.cpu() + "\n" + executors.io() + "\n");
+
+        // Started before the data loads, so slow work during startup shows up too
+        if (fxStallMillis > 0) {
+            fxStallDetector = new FxStallDetector(Thread.currentThread(), executors.timer(), fxHeartbeatMillis, fxStallMillis);
+            fxStallDetector.start();
+            Metrics.addSection("FX thread", fxStallDetector::summary);
+        }
+
+        // Show the window straight away; the rest of the UI is built once the data has loaded
+        Scene scene = new Scene(rootStackPane);
+        applyStylesToScene(scene);
+        stage.setScene(scene);
+        stage.show();
+
         // Load property data
         loadPropertyData();
+    }
 
-        //Choose Median to be center
-        assessedValueCenter = propertiesClass.getMedian();
-
-        // Add all properties to the map initially
-        addPropertiesToMap(propertiesClass.getProperties());
+    // Builds the map and panels around the loaded data
+    private void showPropertyData() {
+        if (queryServicePort != null) {
+            startQueryService();
+        }
 
         // Initialize all UI components
         mapView = createMapLayout();
+
+        // Add all properties to the map initially
+        showUnfilteredMap();
+        if (tilePyramid) {
+            updateTilePyramid();
+        }
+
         Accordion accordionFilterPanel = createAccordionFilterPanel();
         statisticsPanel = createStatisticsPanel();
         toggleStatsButton = createStatsToggleButton();
@@ -145,21 +265,34 @@ public class App extends Application {
         accountSearchButtonFunctionality();
         filterButtonFunctionality();
         removeFilterButtonFunctionality();
+        exportButtonFunctionality();
         centerInputFieldFunctionality();
+        areaSearchButtonFunctionality();
+        heatmapFunctionality();
 
         // Add click functionality to each point on the map
         setupClickHandler();
 
-        // Create the scene, apply the styling and show it on the screen
-        Scene scene = new Scene(rootStackPane);
-        applyStylesToScene(scene);
-        stage.setScene(scene);
-        stage.show();
+        // Apply the styling to the new components
+        applyStyleClasses();
+    }
+
+    private void startQueryService() {
+        queryService = new QueryService(propertiesClass, executors.io());
+        try {
+            queryService.start(queryServicePort);
+            System.out.println("Query service on http://localhost:" + queryService.getPort() + "/");
+        } catch (IOException e) {
+            System.err.println("Could not start the query service: " + e.getMessage());
+            queryService = null;
+        }
     }
 
     private void applyStylesToScene(Scene scene){
         scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
+    }
 
+    private void applyStyleClasses(){
         propertyGroupPane.getStyleClass().add("property-group-pane");
         accountNumberPane.getStyleClass().add("account-number-pane");
 
@@ -179,6 +312,7 @@ public class App extends Application {
         toggleStatsButton.getStyleClass().add("toggle-stats-button");
         filterButton.getStyleClass().add("filter-button");
         removeFilterButton.getStyleClass().add("remove-filter-button");
+        exportButton.getStyleClass().add("export-button");
         accountSearchButton.getStyleClass().add("account-search-button");
     }
 
@@ -210,62 +344,338 @@ public class App extends Application {
         stage.setMinHeight(minScreenHeight);
     }
 
+    // Reads the CSV and builds its columns on the I/O pool, then builds the UI around it
     private void loadPropertyData() {
-        // Load property data
-        try {
-            propertiesClass = new PropertyAssessments("Property_Assessment_Data_2024.csv");
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
-            System.exit(1);
-            return; // Exit if data loading fails
-        }
+        Task<PropertyAssessments> task = new Task<>() {
+            @Override
+            protected PropertyAssessments call() throws IOException {
+                PropertyAssessments properties = new PropertyAssessments("Property_Assessment_Data_2024.csv");
+                properties.getMedian(); // Sorts every value; the snapshot keeps the result for the FX thread
+                return properties;
+            }
+        };
+
+        VBox loadingContainer = createLoadingContainer("Loading Data", task);
+        rootStackPane.getChildren().add(loadingContainer);
+
+        task.setOnSucceeded(e -> {
+            rootStackPane.getChildren().remove(loadingContainer);
+            propertiesClass = task.getValue();
+
+            //Choose Median to be center
+            fullDatasetMedian = propertiesClass.getMedian();
+            assessedValueCenter = fullDatasetMedian;
+
+            showPropertyData();
+        });
+        task.setOnFailed(e -> {
+            System.err.println(task.getException().getMessage());
+            System.exit(1); // Exit if data loading fails
+        });
+
+        executors.io().execute(task);
     }
 
+    // Shows exactly the given properties on the map. The first call builds one graphic per property;
+    // after that only graphics whose visibility changes are touched.
     private void addPropertiesToMap(List<PropertyAssessment> properties) {
-        Task<Void> task = new Task<>() {
+        Task<BitSet> task = new Task<>() {
+            @Override
+            protected BitSet call() throws Exception {
+                // Stop building graphics once a newer query has replaced this one
+                if (!propertyOverlay.isBuilt() && !propertyOverlay.buildGraphics(this::isCancelled, new ProgressThrottle(this::updateProgress, PROGRESS_INTERVAL_MILLIS))) {
+                    return null;
+                }
+                return propertyOverlay.rowsOf(properties);
+            }
+        };
+
+        runQuery("Loading Data", task, this::showRows);
+    }
+
+    // Shows every property and saves that view as fullMapSnapshot, clusters included, so Remove
+    // Filters can put it back without rebuilding anything
+    private void showUnfilteredMap() {
+        long center = fullDatasetMedian;
+        Task<MapSnapshot> task = new Task<>() {
+            @Override
+            protected MapSnapshot call() throws Exception {
+                if (!propertyOverlay.isBuilt() && !propertyOverlay.buildGraphics(this::isCancelled, new ProgressThrottle(this::updateProgress, PROGRESS_INTERVAL_MILLIS))) {
+                    return null;
+                }
+                BitSet rows = propertyOverlay.rowsOf(propertiesClass.getProperties());
+                ClusterIndex allRowsIndex = ClusterIndex.build(propertiesClass.getColumns(), rows.stream().toArray(), this::isCancelled);
+                return allRowsIndex == null ? null : new MapSnapshot(rows, center, allRowsIndex, "");
+            }
+        };
+
+        runQuery("Loading Data", task, snapshot -> {
+            fullMapSnapshot = snapshot;
+            restoreSnapshot(snapshot);
+        });
+    }
+
+    // Shows exactly these rows, colored around assessedValueCenter, and brings the clusters and heatmap in line
+    private void showRows(BitSet rows) {
+        shownRows = rows;
+        propertyOverlay.addGraphicsToOverlay();
+        clearHighlight();
+        applyColorRenderer();
+        propertyOverlay.applyVisibility(rows);
+        rebuildClusters(rows);
+        updateHeatmap();
+    }
+
+    // Puts back a map saved earlier, without touching anything that doesn't change
+    private void restoreSnapshot(MapSnapshot snapshot) {
+        queryScheduler.supersede(); // A filter still running must not replace it afterwards
+        assessedValueCenter = snapshot.getCenter();
+        refreshLegend();
+        propertyStatisticsArea.setText(snapshot.getStatisticsText());
+        showRows(snapshot.getRows());
+    }
+
+    // Clusters the shown rows on a background thread, then swaps them in if nothing newer came along
+    private void rebuildClusters(BitSet rows) {
+        boolean allRows = rows.cardinality() == propertiesClass.getNumberOfRecords();
+        if (allRows && fullMapSnapshot != null) {
+            clusterScheduler.supersede();
+            setClusterIndex(fullMapSnapshot.getClusterIndex());
+            return;
+        }
+
+        Task<ClusterIndex> task = new Task<>() {
+            @Override
+            protected ClusterIndex call() {
+                return ClusterIndex.build(propertiesClass.getColumns(), rows.stream().toArray(), this::isCancelled);
+            }
+        };
+
+        long generation = clusterScheduler.submit(task);
+        task.setOnSucceeded(e -> {
+            if (clusterScheduler.isCurrent(generation) && task.getValue() != null) {
+                setClusterIndex(task.getValue());
+            }
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
+    }
+
+    private void setClusterIndex(ClusterIndex newClusterIndex) {
+        clusterIndex = newClusterIndex;
+        clusterGraphicsByZoom.clear();
+        displayedClusterZoom = -1;
+        updateClusterDisplay();
+    }
+
+    // Brings the tiles on disk up to date in the background (only changed tiles are rendered), then
+    // shows them as a tiled layer
+    private void updateTilePyramid() {
+        long center = fullDatasetMedian;
+        TilePyramid pyramid = new TilePyramid(tileDirectory);
+
+        Task<Boolean> task = new Task<>() {
             @Override
-            protected Void call() throws Exception {
-                List<Graphic> graphics = new ArrayList<>();
+            protected Boolean call() throws IOException {
+                return pyramid.generate(propertiesClass.getColumns(), center, this::isCancelled);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (!task.getValue()) {
+                return;
+            }
+            tileLayer = new WebTiledLayer(pyramid.getUrlTemplate());
+            tileLayer.setVisible(false);
+            tileLayerCenter = center;
+            mapView.getMap().getOperationalLayers().add(tileLayer);
+            updateClusterDisplay();
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
 
-                for (PropertyAssessment property : properties) {
-                    // Generate color and symbol
-                    Color color = getAssesmentColor(property.getAssessedValue());
-                    SimpleMarkerSymbol symbol = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, color, 15);
+        // Mostly reading, writing and deleting tile files; the rendering itself runs in parallel streams
+        executors.io().execute(task);
+    }
 
-                    // Create the graphic
-                    Point point = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
-                    Graphic graphic = new Graphic(point, symbol);
+    // The tiles only match the map while every property is shown, colored around the same center
+    private boolean canShowTiles() {
+        return tileLayer != null && tileLayerCenter == assessedValueCenter
+                && shownRows != null && shownRows.cardinality() == propertiesClass.getNumberOfRecords();
+    }
 
-                    graphic.getAttributes().put("accountID", property.getAccountID());
+    // Shows the pre-rendered tiles or clusters for the current zoom level, or the individual properties
+    // once zoomed in far enough. Called on every viewpoint change, so it only does work when the zoom
+    // level or what can be shown actually changes.
+    private void updateClusterDisplay() {
+        int zoom = WebMercator.zoomForScale(mapView.getMapScale());
+        boolean tiled = canShowTiles() && zoom >= TilePyramid.MIN_ZOOM && zoom <= TilePyramid.MAX_ZOOM;
+        boolean clustered = !tiled && clusterIndex != null && ClusterIndex.isClustered(zoom);
+        int clusterZoom = clustered ? clusterIndex.getLevel(zoom).getZoom() : -1;
+
+        if (clusterZoom == displayedClusterZoom && tiled == tilesDisplayed) {
+            return;
+        }
+        displayedClusterZoom = clusterZoom;
+        tilesDisplayed = tiled;
 
-                    graphics.add(graphic);
+        if (tileLayer != null) {
+            tileLayer.setVisible(tiled);
+        }
+        graphicsOverlay.setVisible(!clustered && !tiled);
+        clusterOverlay.setVisible(clustered);
+        if (clustered) {
+            List<Graphic> clusterGraphics = clusterGraphicsByZoom.computeIfAbsent(clusterZoom, level -> createClusterGraphics(clusterIndex.getLevel(level)));
+            clusterOverlay.getGraphics().setAll(clusterGraphics);
+        }
+    }
+
+    // Recomputes the heatmap for the shown properties in the background. Only the density tiles
+    // near properties that were shown or hidden since the last run are computed again.
+    private void updateHeatmap() {
+        if (!heatmapCheckBox.isSelected() || shownRows == null) {
+            return;
+        }
+
+        BitSet rows = shownRows;
+        DensitySurface.Weighting weighting = "Assessed Value".equals(heatmapWeightingDropdown.getValue())
+                ? DensitySurface.Weighting.ASSESSED_VALUE : DensitySurface.Weighting.COUNT;
 
-                    // Update progress
-                    updateProgress(graphics.size(), properties.size());
+        Task<WritableImage> task = new Task<>() {
+            @Override
+            protected WritableImage call() {
+                DensitySurface surface = getDensitySurface(weighting);
+                if (surface.update(rows, this::isCancelled) < 0) {
+                    return null;
                 }
 
-                // Add graphics to the overlay on the JavaFX thread
-                Platform.runLater(() -> graphicsOverlay.getGraphics().addAll(graphics));
-                return null;
+                WritableImage image = new WritableImage(surface.getWidth(), surface.getHeight());
+                image.getPixelWriter().setPixels(0, 0, surface.getWidth(), surface.getHeight(),
+                        PixelFormat.getIntArgbInstance(), surface.renderArgb(), 0, surface.getWidth());
+                return image;
             }
         };
 
-        VBox loadingContainer = createLoadingContainer("Loading Data", task);
+        long generation = heatmapScheduler.submit(task);
+        task.setOnSucceeded(e -> {
+            if (heatmapScheduler.isCurrent(generation) && task.getValue() != null && heatmapCheckBox.isSelected()) {
+                DensitySurface surface = getDensitySurface(weighting);
+                Envelope extent = new Envelope(surface.getMinX(), surface.getMinY(), surface.getMaxX(), surface.getMaxY(), SpatialReferences.getWebMercator());
+                heatmapOverlay.setImageFrame(new ImageFrame(task.getValue(), extent));
+                heatmapOverlay.setVisible(true);
+            }
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
+    }
+
+    private DensitySurface getDensitySurface(DensitySurface.Weighting weighting) {
+        synchronized (densitySurfaces) {
+            return densitySurfaces.computeIfAbsent(weighting, w -> new DensitySurface(propertiesClass.getColumns(), w));
+        }
+    }
+
+    // Lets a viewport culled property overlay follow the visible area. Nothing needs to be materialized
+    // while clusters or tiles are shown in place of the properties.
+    private void updateViewport() {
+        if (!propertyOverlay.isViewportCulled() || displayedClusterZoom != -1 || tilesDisplayed) {
+            return;
+        }
+
+        Polygon visibleArea = mapView.getVisibleArea();
+        if (visibleArea == null || visibleArea.isEmpty()) {
+            return;
+        }
+        Envelope extent = (Envelope) GeometryEngine.project(visibleArea.getExtent(), SpatialReferences.getWgs84());
+        propertyOverlay.setViewport(extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax());
+    }
+
+    // A circle per cluster, colored by the overlay renderer from its median value, plus a count label
+    private List<Graphic> createClusterGraphics(ClusterIndex.ClusterLevel level) {
+        List<Graphic> clusterGraphics = new ArrayList<>(level.size() * 2);
+
+        for (int cluster = 0; cluster < level.size(); cluster++) {
+            Point center = new Point(level.getX(cluster), level.getY(cluster), SpatialReferences.getWebMercator());
+
+            Graphic circle = new Graphic(center);
+            circle.getAttributes().put(PropertyOverlay.ASSESSED_VALUE_ATTRIBUTE, (double) level.getMedianValue(cluster));
+            circle.getAttributes().put("count", level.getCount(cluster));
+            clusterGraphics.add(circle);
+
+            if (level.getCount(cluster) > 1) {
+                TextSymbol countLabel = new TextSymbol(11, numberFormat.format(level.getCount(cluster)), Color.WHITE,
+                        TextSymbol.HorizontalAlignment.CENTER, TextSymbol.VerticalAlignment.MIDDLE);
+                countLabel.setHaloColor(Color.BLACK);
+                countLabel.setHaloWidth(1);
+                clusterGraphics.add(new Graphic(center, countLabel));
+            }
+        }
+
+        return clusterGraphics;
+    }
+
+    // Colors the properties around assessedValueCenter. Only the renderer's breaks change, so this
+    // costs the same however many properties are on the map.
+    private void applyColorRenderer() {
+        if (classSymbols == null) {
+            classSymbols = new SimpleMarkerSymbol[AssessmentColorScale.getClassCount()];
+            for (int i = 0; i < classSymbols.length; i++) {
+                classSymbols[i] = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, Color.web(AssessmentColorScale.CLASS_COLORS[i]), 15);
+            }
+        }
+
+        List<ClassBreaksRenderer.ClassBreak> classBreaks = new ArrayList<>();
+        for (AssessmentColorScale.ValueBreak valueBreak : AssessmentColorScale.getBreaks(assessedValueCenter)) {
+            classBreaks.add(new ClassBreaksRenderer.ClassBreak("", "", valueBreak.getMinValue(), valueBreak.getMaxValue(), classSymbols[valueBreak.getColorClass()]));
+        }
+
+        graphicsOverlay.setRenderer(new ClassBreaksRenderer(PropertyOverlay.ASSESSED_VALUE_ATTRIBUTE, classBreaks));
+        clusterOverlay.setRenderer(createClusterRenderer());
+
+        // Tiles colored around a different center no longer match
+        updateClusterDisplay();
+    }
+
+    // Same color breaks as the properties, with a larger circle so clusters stand out
+    private ClassBreaksRenderer createClusterRenderer() {
+        List<ClassBreaksRenderer.ClassBreak> classBreaks = new ArrayList<>();
+        for (AssessmentColorScale.ValueBreak valueBreak : AssessmentColorScale.getBreaks(assessedValueCenter)) {
+            Color color = Color.web(AssessmentColorScale.CLASS_COLORS[valueBreak.getColorClass()]);
+            SimpleMarkerSymbol clusterSymbol = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, color, 28);
+            clusterSymbol.setOutline(new SimpleLineSymbol(SimpleLineSymbol.Style.SOLID, Color.WHITE, 1));
+            classBreaks.add(new ClassBreaksRenderer.ClassBreak("", "", valueBreak.getMinValue(), valueBreak.getMaxValue(), clusterSymbol));
+        }
+        return new ClassBreaksRenderer(PropertyOverlay.ASSESSED_VALUE_ATTRIBUTE, classBreaks);
+    }
+
+    // Hides the selection marker and un-fades the property overlay
+    private void clearHighlight() {
+        selectionGraphic.setVisible(false);
+        graphicsOverlay.setOpacity(1f);
+    }
+
+    // Shows a loading bar for the task and hands it to the query scheduler. onResult only runs
+    // for the newest query; superseded tasks are cancelled or have their results dropped.
+    private <V> void runQuery(String loadingMessage, Task<V> task, Consumer<V> onResult) {
+        VBox loadingContainer = createLoadingContainer(loadingMessage, task);
 
         // Add the loading container to the StackPane
         Platform.runLater(() -> rootStackPane.getChildren().add(loadingContainer)); // rootStackPane is the root of your Scene
 
-        // Remove the loading container once the task is complete
-        task.setOnSucceeded(e -> Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer)));
+        long generation = queryScheduler.submit(task);
+
+        task.setOnSucceeded(e -> {
+            Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
+
+            if (queryScheduler.isCurrent(generation)) {
+                onResult.accept(task.getValue());
+            }
+        });
+
+        // Superseded before it finished
+        task.setOnCancelled(e -> Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer)));
 
         // Remove the loading container in case of failure
         task.setOnFailed(e -> {
             Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
             task.getException().printStackTrace();
         });
-
-        // Run the task in a background thread
-        new Thread(task).start();
     }
 
     private MapView createMapLayout() {
@@ -281,6 +691,42 @@ public class App extends Application {
         graphicsOverlay = new GraphicsOverlay();
         graphicsOverlay.setScaleSymbols(true);
         mapView.getGraphicsOverlays().add(graphicsOverlay);
+        if (viewportCulling) {
+            propertyOverlay = new PropertyOverlay(graphicsOverlay, propertiesClass.getProperties(), propertiesClass.getColumns(), propertiesClass.getSpatialIndex(), maxLiveGraphics);
+        } else {
+            propertyOverlay = new PropertyOverlay(graphicsOverlay, propertiesClass.getProperties(), propertiesClass.getColumns());
+        }
+
+        // Clusters replace the individual properties when zoomed out
+        clusterOverlay = new GraphicsOverlay();
+        clusterOverlay.setVisible(false);
+        mapView.getGraphicsOverlays().add(clusterOverlay);
+        mapView.addViewpointChangedListener(event -> {
+            updateClusterDisplay();
+            updateViewport();
+        });
+
+        // Heatmap image, hidden until it is turned on
+        heatmapOverlay = new ImageOverlay();
+        heatmapOverlay.setOpacity(0.75f);
+        heatmapOverlay.setVisible(false);
+        mapView.getImageOverlays().add(heatmapOverlay);
+
+        // The selected property is drawn on its own overlay above the others, so highlighting one only
+        // moves this single graphic and fades the property overlay as a whole
+        selectionOverlay = new GraphicsOverlay();
+        selectionOverlay.setScaleSymbols(true);
+        selectionGraphic = new Graphic(new Point(0, 0, SpatialReferences.getWgs84()), new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, Color.MAGENTA, 20));
+        selectionGraphic.setVisible(false);
+        selectionOverlay.getGraphics().add(selectionGraphic);
+        mapView.getGraphicsOverlays().add(selectionOverlay);
+
+        // Outline of the area used for an area search, drawn above the properties
+        areaOverlay = new GraphicsOverlay();
+        mapView.getGraphicsOverlays().add(areaOverlay);
+
+        geometryEditor = new GeometryEditor();
+        mapView.setGeometryEditor(geometryEditor);
         return mapView;
     }
 
@@ -295,11 +741,26 @@ public class App extends Application {
         accountNumberPane = new TitledPane();
         accountNumberPane.setText("Account Search");
 
+        // Area (polygon) search
+        areaSearchPane = new TitledPane();
+        areaSearchPane.setText("Area Search");
+
+        // Heatmap view
+        heatmapPane = new TitledPane();
+        heatmapPane.setText("Heatmap");
+
+        // Timings per phase, for telling where the time went when the app feels slow
+        diagnosticsPane = new TitledPane();
+        diagnosticsPane.setText("Diagnostics");
+
         //Add Buttons to Accordion sub panes
         addButtonsToPropertyGroupPane();
         addButtonsToAccountNumberPane();
+        addButtonsToAreaSearchPane();
+        addControlsToHeatmapPane();
+        addControlsToDiagnosticsPane();
 
-        accordion.getPanes().addAll(propertyGroupPane, accountNumberPane);
+        accordion.getPanes().addAll(propertyGroupPane, accountNumberPane, areaSearchPane, heatmapPane, diagnosticsPane);
 
         accordion.setPrefWidth(250);
 
@@ -400,23 +861,27 @@ public class App extends Application {
         legend.getChildren().clear();
         // Define legend items
         legend.getChildren().addAll(
-                createLegendItem("Zero Value: $0", Color.BLACK),
-                createLegendItem(String.format("50%% Below Center: $%s", numberFormat.format(assessedValueCenter*0.5)), Color.web("#4b2ca3")),
-                createLegendItem(String.format("$30%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.7)), Color.web("#0077bb")),
-                createLegendItem(String.format("$15%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.85)), Color.web("#00b891")),
-                createLegendItem(String.format("$5%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.95)), Color.web("#6ccc63")),
-                createLegendItem(String.format("$2%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.98)), Color.web("#d9ed4c")),
-                createLegendItem(String.format("Center: $%s",numberFormat.format(assessedValueCenter)), Color.web("#ffff66")),
-                createLegendItem(String.format("$2%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.02)),Color.web("#ffcc33")),
-                createLegendItem(String.format("$5%% Above Center: $%s",numberFormat.format(assessedValueCenter * 1.05)) ,Color.web("#ff8c00")),
-                createLegendItem(String.format("$15%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.15)), Color.web("#e64a19")),
-                createLegendItem(String.format("$30%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.3)) ,Color.web("#c70039")),
-                createLegendItem(String.format("$50%% Above Center: $%s",numberFormat.format(assessedValueCenter * 1.5)) ,Color.web("#800026")),
+                createLegendItem("Zero Value: $0", legendColor(AssessmentColorScale.ZERO)),
+                createLegendItem(String.format("50%% Below Center: $%s", numberFormat.format(assessedValueCenter*0.5)), legendColor(1)),
+                createLegendItem(String.format("$30%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.7)), legendColor(2)),
+                createLegendItem(String.format("$15%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.85)), legendColor(3)),
+                createLegendItem(String.format("$5%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.95)), legendColor(4)),
+                createLegendItem(String.format("$2%% Below Center: $%s", numberFormat.format(assessedValueCenter * 0.98)), legendColor(5)),
+                createLegendItem(String.format("Center: $%s",numberFormat.format(assessedValueCenter)), legendColor(6)),
+                createLegendItem(String.format("$2%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.02)),legendColor(7)),
+                createLegendItem(String.format("$5%% Above Center: $%s",numberFormat.format(assessedValueCenter * 1.05)) ,legendColor(8)),
+                createLegendItem(String.format("$15%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.15)), legendColor(9)),
+                createLegendItem(String.format("$30%% Above Center: $%s", numberFormat.format(assessedValueCenter * 1.3)) ,legendColor(10)),
+                createLegendItem(String.format("$50%% Above Center: $%s",numberFormat.format(assessedValueCenter * 1.5)) ,legendColor(11)),
                 createLegendItem("Selected", Color.MAGENTA)
         );
 
     }
 
+    private Color legendColor(int colorClass) {
+        return Color.web(AssessmentColorScale.CLASS_COLORS[colorClass]);
+    }
+
     private HBox createLegendItem(String labelText, Color color) {
         legendItem = new HBox(5);
 
@@ -576,8 +1041,9 @@ public class App extends Application {
 
         filterButton = createButton("Apply Filter");
         removeFilterButton = createButton("Remove Filters");
+        exportButton = createButton("Export Shown Properties");
 
-        propertyGroupContent.getChildren().addAll(filterLabel, filterDropdown, valueDropdown, garageFilterBox, priceFilterBox, filterButton, removeFilterButton);
+        propertyGroupContent.getChildren().addAll(filterLabel, filterDropdown, valueDropdown, garageFilterBox, priceFilterBox, filterButton, removeFilterButton, exportButton);
         propertyGroupPane.setContent(propertyGroupContent);
     }
 
@@ -596,6 +1062,52 @@ public class App extends Application {
 
     }
 
+    private void addButtonsToAreaSearchPane() {
+        VBox areaSearchContent = new VBox(10);
+        Label areaSearchLabel = new Label("Search within an area:");
+
+        drawAreaButton = createButton("Draw Area");
+        loadAreaButton = createButton("Load WKT File");
+
+        areaSearchContent.getChildren().addAll(areaSearchLabel, drawAreaButton, loadAreaButton);
+        areaSearchPane.setContent(areaSearchContent);
+    }
+
+    private void addControlsToHeatmapPane() {
+        VBox heatmapContent = new VBox(10);
+
+        heatmapCheckBox = new CheckBox("Show Heatmap");
+
+        Label weightingLabel = new Label("Weight by:");
+        heatmapWeightingDropdown = new ComboBox<>();
+        heatmapWeightingDropdown.getItems().addAll("Number of Properties", "Assessed Value");
+        heatmapWeightingDropdown.setValue("Number of Properties");
+
+        heatmapContent.getChildren().addAll(heatmapCheckBox, weightingLabel, heatmapWeightingDropdown);
+        heatmapPane.setContent(heatmapContent);
+    }
+
+    private void addControlsToDiagnosticsPane() {
+        VBox diagnosticsContent = new VBox(10);
+
+        TextArea metricsArea = new TextArea();
+        metricsArea.setEditable(false);
+        metricsArea.setFont(Font.font("Monospaced", 11));
+        metricsArea.setPrefRowCount(12);
+
+        Button refreshButton = createButton("Refresh");
+        refreshButton.setOnAction(event -> metricsArea.setText(Metrics.summary()));
+
+        Button resetButton = createButton("Reset");
+        resetButton.setOnAction(event -> {
+            Metrics.reset();
+            metricsArea.setText(Metrics.summary());
+        });
+
+        diagnosticsContent.getChildren().addAll(metricsArea, new HBox(10, refreshButton, resetButton));
+        diagnosticsPane.setContent(diagnosticsContent);
+    }
+
     private void populateValues(String selectedFilter) {
         valueDropdown.getItems().clear();
 
@@ -640,60 +1152,22 @@ public class App extends Application {
                     String centerString = centerInputField.getText().trim();
 
 
-                    final Long newCenter; // Declare priceValue as final
-                    if (centerString.isEmpty()) {
-                        try {
-                            newCenter = Long.parseLong(centerString);
-                        } catch (NumberFormatException e) {
-                            Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid price value. Please enter a valid number.", ButtonType.OK);
-                            alert.showAndWait();
-                            return;
-                        }
-                    }else {
-                        newCenter = null;
+                    final long newCenter;
+                    try {
+                        newCenter = Long.parseLong(centerString);
+                    } catch (NumberFormatException e) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid price value. Please enter a valid number.", ButtonType.OK);
+                        alert.showAndWait();
+                        return;
                     }
 
-                    assessedValueCenter = Long.parseLong(centerString);
-
-                    // Create a background task to simulate progress
-                    Task<Void> task = new Task<>() {
-                        @Override
-                        protected Void call() throws Exception {
-                            // Simulate progress
-                            for (int i = 0; i <= 10; i++) {
-                                updateProgress(i, 10);
-                                Thread.sleep(50); // Simulated delay
-                            }
-                            return null;
-                        }
-                    };
-
-                    // Create a loading container with a progress bar and label
-                    VBox loadingContainer = createLoadingContainer("recentering", task);
-
-                    // Add the loading container to the root stack pane
-                    Platform.runLater(() -> rootStackPane.getChildren().add(loadingContainer));
-
-                    // When the task succeeds, clear the filters and reset the map
-                    task.setOnSucceeded(e -> {
-                        Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-                        graphicsOverlay.getGraphics().clear(); // Clear all graphics
-                        addPropertiesToMap(propertiesClass.getProperties()); // Re-add all properties
-                        //Redraw legend
-                        refreshLegend();
-
-                    });
-
-                    // Handle task failure
-                    task.setOnFailed(e -> {
-                        Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-                        e.getSource().getException().printStackTrace();
-                    });
-
-                    // Run the task in a background thread
-                    new Thread(task).start();
-
+                    assessedValueCenter = newCenter;
 
+                    // Recoloring only swaps the renderer's breaks, so there is nothing to wait for
+                    clearHighlight();
+                    applyColorRenderer();
+                    //Redraw legend
+                    refreshLegend();
                 }
 
             }
@@ -752,242 +1226,276 @@ public class App extends Application {
                 priceValue = null; // No price filtering if input is empty
             }
 
+            FilterExpression expression = buildFilterExpression(selectedFilter, filterValue, garageFilter, priceComparison, priceValue);
+
             Task<List<PropertyAssessment>> task = new Task<>() {
                 @Override
                 protected List<PropertyAssessment> call() {
-                    List<PropertyAssessment> filteredProperties = propertiesClass.getProperties();
-
-                    // Apply primary filter
-                    if (selectedFilter != null && filterValue != null && !filterValue.isEmpty()) {
-                        filteredProperties = filteredProperties.stream()
-                                .filter(property -> {
-                                    switch (selectedFilter) {
-                                        case "Neighborhood":
-                                            return property.getNeighborhood().getNeighborhoodName().equals(filterValue);
-                                        case "Assessment Class":
-                                            return property.getAssessmentClass().toString().contains(filterValue);
-                                        case "Ward":
-                                            return property.getNeighborhood().getWard().contains(filterValue);
-                                        default:
-                                            return true;
-                                    }
-                                })
-                                .collect(Collectors.toList());
-                    }
+                    List<PropertyAssessment> filteredProperties = propertiesClass.filter(expression, this::isCancelled);
 
-                    // Apply garage filter
-                    if (!garageFilter.equals("All")) {
-                        boolean hasGarage = garageFilter.equals("Yes");
-                        filteredProperties = filteredProperties.stream()
-                                .filter(property -> property.getGarage().equalsIgnoreCase(hasGarage ? "Y" : "N"))
-                                .collect(Collectors.toList());
-                    }
-
-                    // Apply price filter if input is valid
-                    if (priceValue != null && priceComparison != null && !priceComparison.isEmpty()) {
-                        switch (priceComparison) {
-                            case "Under":
-                                filteredProperties = filteredProperties.stream()
-                                        .filter(property -> property.getAssessedValue() < priceValue)
-                                        .collect(Collectors.toList());
-                                break;
-                            case "Equal":
-                                filteredProperties = filteredProperties.stream()
-                                        .filter(property -> property.getAssessedValue() == priceValue)
-                                        .collect(Collectors.toList());
-                                break;
-                            case "Above":
-                                filteredProperties = filteredProperties.stream()
-                                        .filter(property -> property.getAssessedValue() > priceValue)
-                                        .collect(Collectors.toList());
-                                break;
-                        }
-                    }
-
-                    return filteredProperties;
+                    // A partial scan is meaningless, so drop it if a newer query came in
+                    return isCancelled() ? null : filteredProperties;
                 }
             };
 
-            VBox loadingContainer = createLoadingContainer("Applying Filter", task);
-            Platform.runLater(() -> rootStackPane.getChildren().add(loadingContainer));
+            runQuery("Applying Filter", task, filteredProperties -> showFilteredProperties(filteredProperties, "Custom Filter"));
+        });
+    }
 
-            task.setOnSucceeded(e -> {
-                Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
+    // Turns the filter panel selections into one expression; unset controls add no predicate
+    private FilterExpression buildFilterExpression(String selectedFilter, String filterValue, String garageFilter, String priceComparison, Long priceValue) {
+        List<FilterExpression> predicates = new ArrayList<>();
 
-                List<PropertyAssessment> filteredProperties = task.getValue();
-                if (filteredProperties != null && !filteredProperties.isEmpty()) {
-                    // Update the legend dynamically based on filtered properties
-                    updateLegend(filteredProperties);
+        // Primary filter
+        if (selectedFilter != null && filterValue != null && !filterValue.isEmpty()) {
+            switch (selectedFilter) {
+                case "Neighborhood" -> predicates.add(FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, filterValue));
+                case "Assessment Class" -> predicates.add(FilterExpression.equalTo(FilterExpression.Field.ASSESSMENT_CLASS, filterValue));
+                case "Ward" -> predicates.add(FilterExpression.equalTo(FilterExpression.Field.WARD, filterValue));
+            }
+        }
 
-                    // Update other UI components
-                    displayPropertyStatisticsInfo(filteredProperties, "Custom Filter");
+        // Garage filter
+        if (!garageFilter.equals("All")) {
+            boolean hasGarage = garageFilter.equals("Yes");
+            predicates.add(FilterExpression.equalTo(FilterExpression.Field.GARAGE, hasGarage ? "Y" : "N"));
+        }
 
-                    PropertyAssessment property = filteredProperties.get(0) ;
-                    Point groupPoint = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
-                    //Zoom out further than normal to show the entire group
-                    mapView.setViewpointCenterAsync(groupPoint, 10000);
+        // Price filter if input is valid
+        if (priceValue != null && priceComparison != null && !priceComparison.isEmpty()) {
+            switch (priceComparison) {
+                case "Under" -> predicates.add(FilterExpression.valueBelow(priceValue));
+                case "Equal" -> predicates.add(FilterExpression.valueEqualTo(priceValue));
+                case "Above" -> predicates.add(FilterExpression.valueAbove(priceValue));
+            }
+        }
 
-                    updateMapWithFilteredProperties(filteredProperties);
-                } else {
-                    Alert alert = new Alert(Alert.AlertType.INFORMATION, "No properties match the selected filters.", ButtonType.OK);
-                    alert.showAndWait();
+        return FilterExpression.and(predicates);
+    }
+
+    // Shows a filter or area search result in the legend, statistics panel and on the map
+    private void showFilteredProperties(List<PropertyAssessment> filteredProperties, String filterValue) {
+        if (filteredProperties != null && !filteredProperties.isEmpty()) {
+            // Update the legend dynamically based on filtered properties
+            updateLegend(filteredProperties);
+
+            // Update other UI components
+            displayPropertyStatisticsInfo(filteredProperties, filterValue);
+
+            PropertyAssessment property = filteredProperties.get(0) ;
+            Point groupPoint = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
+            //Zoom out further than normal to show the entire group
+            mapView.setViewpointCenterAsync(groupPoint, 10000);
+
+            updateMapWithFilteredProperties(filteredProperties);
+        } else {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, "No properties match the selected filters.", ButtonType.OK);
+            alert.showAndWait();
+
+            // Reset the legend if no properties match
+            updateLegend(null);
+        }
+    }
+
+    private void heatmapFunctionality() {
+        heatmapCheckBox.setOnAction(event -> {
+            if (heatmapCheckBox.isSelected()) {
+                updateHeatmap();
+            } else {
+                heatmapScheduler.supersede();
+                heatmapOverlay.setVisible(false);
+            }
+        });
+        heatmapWeightingDropdown.setOnAction(event -> updateHeatmap());
+    }
 
-                    // Reset the legend if no properties match
-                    updateLegend(null);
+    private void areaSearchButtonFunctionality() {
+        // Draw Area starts the polygon editor; pressing it again finishes the polygon and runs the search
+        drawAreaButton.setOnAction(event -> {
+            if (!geometryEditor.isStarted()) {
+                areaOverlay.getGraphics().clear();
+                geometryEditor.start(GeometryType.POLYGON);
+                drawAreaButton.setText("Finish Area");
+                return;
+            }
+
+            Geometry geometry = geometryEditor.stop();
+            drawAreaButton.setText("Draw Area");
+
+            if (geometry instanceof Polygon && !geometry.isEmpty()) {
+                Polygon polygon = (Polygon) GeometryEngine.project(geometry, SpatialReferences.getWgs84());
+                SelectionPolygon selectionPolygon = toSelectionPolygon(polygon);
+                if (!selectionPolygon.isEmpty()) {
+                    applyAreaSearch(selectionPolygon, "Drawn Area");
                 }
-            });
+            }
+        });
 
-            task.setOnFailed(e -> {
-                Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-                e.getSource().getException().printStackTrace();
-            });
+        loadAreaButton.setOnAction(event -> {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Open Area (WKT)");
+            fileChooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("Well-known text", "*.wkt", "*.txt"),
+                    new FileChooser.ExtensionFilter("All files", "*.*"));
 
-            new Thread(task).start();
+            File file = fileChooser.showOpenDialog(mapView.getScene().getWindow());
+            if (file == null) {
+                return;
+            }
+
+            try {
+                applyAreaSearch(SelectionPolygon.fromWktFile(file.toPath()), file.getName());
+            } catch (IOException | IllegalArgumentException e) {
+                Alert alert = new Alert(Alert.AlertType.ERROR, "Could not read area: " + e.getMessage(), ButtonType.OK);
+                alert.showAndWait();
+            }
         });
     }
 
+    private SelectionPolygon toSelectionPolygon(Polygon polygon) {
+        SelectionPolygon selectionPolygon = new SelectionPolygon();
+
+        for (ImmutablePart part : polygon.getParts()) {
+            List<Point> points = new ArrayList<>();
+            part.getPoints().forEach(points::add);
+            if (points.size() < 3) continue;
+
+            double[] lngs = new double[points.size()];
+            double[] lats = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                lngs[i] = points.get(i).getX();
+                lats[i] = points.get(i).getY();
+            }
+            selectionPolygon.addRing(lngs, lats);
+        }
+
+        return selectionPolygon;
+    }
+
+    private void applyAreaSearch(SelectionPolygon selectionPolygon, String areaName) {
+        showAreaOutline(selectionPolygon);
+
+        Task<List<PropertyAssessment>> task = new Task<>() {
+            @Override
+            protected List<PropertyAssessment> call() {
+                return propertiesClass.getPropertiesInPolygon(selectionPolygon, this::isCancelled);
+            }
+        };
+
+        runQuery("Searching Area", task, areaProperties -> showFilteredProperties(areaProperties, areaName));
+    }
+
+    private void showAreaOutline(SelectionPolygon selectionPolygon) {
+        SimpleLineSymbol outline = new SimpleLineSymbol(SimpleLineSymbol.Style.DASH, Color.WHITE, 2);
+        SimpleFillSymbol fill = new SimpleFillSymbol(SimpleFillSymbol.Style.SOLID, Color.web("#ffffff", 0.1), outline);
+
+        areaOverlay.getGraphics().clear();
+        for (int ring = 0; ring < selectionPolygon.getRingCount(); ring++) {
+            double[] lngs = selectionPolygon.getRingXs(ring);
+            double[] lats = selectionPolygon.getRingYs(ring);
+
+            PointCollection points = new PointCollection(SpatialReferences.getWgs84());
+            for (int i = 0; i < lngs.length; i++) {
+                points.add(new Point(lngs[i], lats[i]));
+            }
+            areaOverlay.getGraphics().add(new Graphic(new Polygon(points), fill));
+        }
+    }
+
     private void updateLegend(List<PropertyAssessment> filteredProperties) {
         if (filteredProperties != null && !filteredProperties.isEmpty()) {
             // Update the assessed value center (median) based on the filtered properties
-            assessedValueCenter = new PropertyAssessments(filteredProperties).getMedian();
+            assessedValueCenter = DatasetSnapshot.medianOf(DatasetSnapshot.assessedValuesOf(filteredProperties));
         } else {
             // Reset to the original center if no properties match
-            assessedValueCenter = propertiesClass.getMedian();
+            assessedValueCenter = fullDatasetMedian;
         }
 
         // Refresh the legend with the new median
         refreshLegend();
     }
 
-    private void removeFilterButtonFunctionality() {
-        removeFilterButton.setOnAction(event -> {
-            // Create a background task to simulate progress
-            Task<Void> task = new Task<>() {
+    // Writes whatever the map currently shows to CSV or GeoJSON, on an I/O thread, with a cancel button
+    private void exportButtonFunctionality() {
+        exportButton.setOnAction(event -> {
+            if (shownRows == null) {
+                return; // Still loading
+            }
+
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Export Shown Properties");
+            fileChooser.setInitialFileName("properties.csv");
+            fileChooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                    new FileChooser.ExtensionFilter("GeoJSON", "*.geojson", "*.json"));
+
+            File file = fileChooser.showSaveDialog(mapView.getScene().getWindow());
+            if (file == null) {
+                return;
+            }
+
+            BitSet rows = (BitSet) shownRows.clone(); // The map may change while the export runs
+            DatasetExport export = new DatasetExport(propertiesClass.getSnapshot(), DatasetExport.formatOf(file.toPath()));
+            Task<Boolean> task = new Task<>() {
                 @Override
-                protected Void call() throws Exception {
-                    // Simulate progress
-                    for (int i = 0; i <= 10; i++) {
-                        updateProgress(i, 10);
-                        Thread.sleep(50); // Simulated delay
-                    }
-                    return null;
+                protected Boolean call() throws IOException {
+                    return export.write(file.toPath(), rows, this::isCancelled, new ProgressThrottle(this::updateProgress, PROGRESS_INTERVAL_MILLIS));
                 }
             };
 
-            // Create a loading container with a progress bar and label
-            VBox loadingContainer = createLoadingContainer("Removing Filters...", task);
-
-            // Add the loading container to the root stack pane
-            Platform.runLater(() -> rootStackPane.getChildren().add(loadingContainer));
-
-            // When the task succeeds, clear the filters and reset the map
-            task.setOnSucceeded(e -> {
-                Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-                graphicsOverlay.getGraphics().clear(); // Clear all graphics
-                addPropertiesToMap(propertiesClass.getProperties()); // Re-add all properties
-                Point edmontonViewPoint = new Point(-113.4938, 53.5461, SpatialReferences.getWgs84());
-                mapView.setViewpointCenterAsync(edmontonViewPoint, 15000); // Reset the view
-                assessedValueCenter = propertiesClass.getMedian();
-                //Redraw legend
-                refreshLegend();
-                // Reset text area's text & pie chart
-                propertyInfoArea.setText("");
-                propertyStatisticsArea.setText("");
-                classesPieChart.setVisible(false);
-                classesPieChart.setManaged(false);
-                classesPieChart.setMinHeight(0);
-                classesPieChart.setMinWidth(0);
-                filterDropdown.getSelectionModel().clearSelection();
-                valueDropdown.getSelectionModel().clearSelection();
-                priceComparisonDropdown.getSelectionModel().clearSelection();
-                priceInputField.setText("");
-                centerInputField.setText("");
-                accountSearchInput.setText("");
-                garageFilterGroup.selectToggle(garageFilterGroup.getToggles().get(0));
-
-            });
+            VBox loadingContainer = createLoadingContainer("Exporting " + numberFormat.format(rows.cardinality()) + " properties", task);
+            Button cancelButton = createButton("Cancel");
+            cancelButton.setOnAction(e -> task.cancel(false)); // No interrupt, so the channel closes normally and the partial file is removed
+            loadingContainer.getChildren().add(cancelButton);
+            rootStackPane.getChildren().add(loadingContainer);
 
-            // Handle task failure
+            task.setOnSucceeded(e -> rootStackPane.getChildren().remove(loadingContainer));
+            task.setOnCancelled(e -> rootStackPane.getChildren().remove(loadingContainer));
             task.setOnFailed(e -> {
-                Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-                e.getSource().getException().printStackTrace();
+                rootStackPane.getChildren().remove(loadingContainer);
+                Alert alert = new Alert(Alert.AlertType.ERROR, "Could not export: " + task.getException().getMessage(), ButtonType.OK);
+                alert.showAndWait();
             });
 
-            // Run the task in a background thread
-            new Thread(task).start();
+            executors.io().execute(task);
         });
     }
 
+    private void removeFilterButtonFunctionality() {
+        removeFilterButton.setOnAction(event -> {
+            areaOverlay.getGraphics().clear(); // Clear any area search outline
+            Point edmontonViewPoint = new Point(-113.4938, 53.5461, SpatialReferences.getWgs84());
+            mapView.setViewpointCenterAsync(edmontonViewPoint, 15000); // Reset the view
 
-
-    private void updateMapWithFilteredProperties(List<PropertyAssessment> filteredProperties) {
-        graphicsOverlay.getGraphics().clear();
-        addPropertiesToMap(filteredProperties);
-
+            // The unfiltered map is saved when it is first shown; if a filter replaced it before then, show it again
+            if (fullMapSnapshot != null) {
+                restoreSnapshot(fullMapSnapshot);
+            } else {
+                showUnfilteredMap();
+            }
+            // Reset text area's text & pie chart
+            propertyInfoArea.setText("");
+            classesPieChart.setVisible(false);
+            classesPieChart.setManaged(false);
+            classesPieChart.setMinHeight(0);
+            classesPieChart.setMinWidth(0);
+            filterDropdown.getSelectionModel().clearSelection();
+            valueDropdown.getSelectionModel().clearSelection();
+            priceComparisonDropdown.getSelectionModel().clearSelection();
+            priceInputField.setText("");
+            centerInputField.setText("");
+            accountSearchInput.setText("");
+            garageFilterGroup.selectToggle(garageFilterGroup.getToggles().get(0));
+        });
     }
 
-    // Altered version of the Spectral 11 Color Palette
-    private Color getAssesmentColor(long currentAssessedValue){
-
-        if (currentAssessedValue == 0){
-            return Color.BLACK;
-        }
-        //-50% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 0.5) {
-            return Color.web("#4b2ca3"); // Royal Blue
-        }
-        //-30% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 0.70){
-            return Color.web("#0077bb"); // Bright Azure
-        }
-
-        //-15% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 0.85) {
-            return Color.web("#00b891"); // Vivid Turquoise
-        }
-        //-5 % off of center
-        else if (currentAssessedValue <= assessedValueCenter * 0.95) {
-            return Color.web("#6ccc63"); // Spring Green
-        }
-        //-2% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 0.98) {
-
-            return Color.web("#d9ed4c"); // Bright Lime
-        }
-
-        //At Center
-        else if (currentAssessedValue == assessedValueCenter) {
-            return Color.web("#ffff66"); // Pure Yellow
-        }
-
-        //+2% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 1.02) {
-            return Color.web("#ffcc33"); // Bright Amber
-        }
-        //+5% off of center
-        else if (currentAssessedValue <= assessedValueCenter * 1.05 ) {
-            return Color.web("#ff8c00"); // Vivid Orange
-        }
-        //+15% of center
-        else if (currentAssessedValue <= assessedValueCenter * 1.15 )  {
-            return Color.web("#e64a19"); // Deep Coral
-        }
-        //+30%  of center
-        else if (currentAssessedValue <= assessedValueCenter * 1.30) {
 
-            return Color.web("#c70039"); // Crimson
-        }
-        // +50% of center
-        else{
 
-            return Color.web("#800026"); // Dark Burgundy
-        }
+    private void updateMapWithFilteredProperties(List<PropertyAssessment> filteredProperties) {
+        addPropertiesToMap(filteredProperties);
 
     }
 
-
-
-
     // Display property information
     private void displayPropertyInfo(PropertyAssessment property) {
         if (property == null) {
@@ -1018,12 +1526,11 @@ public class App extends Application {
 
     // Display property information
     private void displayPropertyStatisticsInfo(List<PropertyAssessment> properties , String filterValue) {
-
-        PropertyAssessments propertyAssessments = new PropertyAssessments(properties);
-
-        if (properties == null) {
+        if (properties == null || properties.isEmpty()) {
             propertyStatisticsArea.setText("No property statistics available.");
         } else {
+            // Computed from the filtered values alone, without building a dataset around them
+            BatchReport.GroupStatistics statistics = BatchReport.GroupStatistics.of(filterValue, DatasetSnapshot.assessedValuesOf(properties));
 
             //For formatting assessed value into a currency
             DecimalFormat numberFormat = new DecimalFormat("#,###");
@@ -1035,12 +1542,12 @@ public class App extends Application {
                             "Property value Range: $%s%n" +
                             "Mean Property Value: $%s%n" +
                             "Median Property Value: $%s%n",
-                    propertyAssessments.getNumberOfRecords(),
-                    numberFormat.format(propertyAssessments.getMinValue()),
-                    numberFormat.format(propertyAssessments.getMaxValue()),
-                    numberFormat.format(propertyAssessments.getRange()),
-                    numberFormat.format(propertyAssessments.getMean()),
-                    numberFormat.format(propertyAssessments.getMedian())
+                    statistics.getCount(),
+                    numberFormat.format(statistics.getMin()),
+                    numberFormat.format(statistics.getMax()),
+                    numberFormat.format(statistics.getMax() - statistics.getMin()),
+                    numberFormat.format(statistics.getMean()),
+                    numberFormat.format(statistics.getMedian())
             ));
         }
     }
@@ -1080,68 +1587,29 @@ public class App extends Application {
         });
     }
 
-    // Highlight selected property
+    // Highlight selected property. Touches one graphic, the overlay opacity and the renderer, so it
+    // costs the same however many properties are on the map.
     private void highlightSelectedProperty(PropertyAssessment property) {
-
-        assessedValueCenter = property.getAssessedValue();
-        refreshLegend();
-        // Background task for preparing graphics
-        Task<List<Graphic>> task = new Task<>() {
-            @Override
-            protected List<Graphic> call() {
-                List<Graphic> fadedGraphics = new ArrayList<>();
-                List<PropertyAssessment> properties = propertiesClass.getProperties();
-
-                for (int i = 0; i < properties.size(); i++) {
-                    PropertyAssessment otherProperty = properties.get(i);
-
-                    if (otherProperty != property) { // Exclude the selected property
-                        Color fadedColor = getAssesmentColor(otherProperty.getAssessedValue()).deriveColor(0, 1, 1, 0.3);
-                        SimpleMarkerSymbol fadedSymbol = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, fadedColor, 15);
-                        Point fadedPoint = new Point(otherProperty.getLocation().getLng(), otherProperty.getLocation().getLat(), SpatialReferences.getWgs84());
-                        Graphic fadedGraphic = new Graphic(fadedPoint, fadedSymbol);
-                        fadedGraphics.add(fadedGraphic);
-                    }
-
-                    // Update progress
-                    updateProgress(i + 1, properties.size());
-                }
-
-                // Prepare the highlighted graphic
-                Point highlightedPoint = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
-                SimpleMarkerSymbol highlightedSymbol = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, Color.MAGENTA, 20);
-                fadedGraphics.add(new Graphic(highlightedPoint, highlightedSymbol));
-
-                return fadedGraphics;
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.HIGHLIGHT)) {
+            // A filter still running would otherwise replace the highlight when it finishes. The initial
+            // load is left alone; it only clears the highlight once the properties appear.
+            if (propertyOverlay.isAdded()) {
+                queryScheduler.supersede();
             }
-        };
-
-        VBox loadingContainer = createLoadingContainer("Loading Data", task);
-
-        // Add the loading container to the StackPane
-        Platform.runLater(() -> rootStackPane.getChildren().add(loadingContainer)); // rootStackPane is the root of your Scene
 
-        task.setOnSucceeded(e -> {
-            // Remove the loading container
-            Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
+            assessedValueCenter = property.getAssessedValue();
+            refreshLegend();
+            applyColorRenderer();
 
-            // Update graphics overlay and map viewpoint
-            graphicsOverlay.getGraphics().clear();
-            graphicsOverlay.getGraphics().addAll(task.getValue()); // Add all graphics in one batch
+            // Fade every other property and move the marker onto the selected one
+            graphicsOverlay.setOpacity(FADED_OVERLAY_OPACITY);
+            Point highlightedPoint = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
+            selectionGraphic.setGeometry(highlightedPoint);
+            selectionGraphic.setVisible(true);
 
             // Center the map on the selected property
-            Point centerPoint = new Point(property.getLocation().getLng(), property.getLocation().getLat(), SpatialReferences.getWgs84());
-            mapView.setViewpointCenterAsync(centerPoint, 3000);
-        });
-
-        task.setOnFailed(e -> {
-            // Remove the progress bar in case of failure
-            Platform.runLater(() -> rootStackPane.getChildren().remove(loadingContainer));
-            e.getSource().getException().printStackTrace();
-        });
-
-        // Start the task in a background thread
-        new Thread(task).start();
+            mapView.setViewpointCenterAsync(highlightedPoint, 3000);
+        }
     }
 
     private VBox createLoadingContainer(String loadingMessage, Task<?> task) {
@@ -1167,50 +1635,116 @@ public class App extends Application {
 
     private void setupClickHandler() {
         mapView.setOnMouseClicked(event -> {
-            if (event.isStillSincePress()) { // Ensure it's not a drag
+            if (event.isStillSincePress() && !geometryEditor.isStarted()) { // Ensure it's not a drag or an area being drawn
                 Point2D screenPoint = new Point2D(event.getX(), event.getY()); // Screen coordinates where the user clicked
 
-                // Perform a hit test on the GraphicsOverlay
-                ListenableFuture<IdentifyGraphicsOverlayResult> future = mapView.identifyGraphicsOverlayAsync(graphicsOverlay, screenPoint, 10, false, 1);
+                if (clickIdentify) {
+                    identifyClickedProperty(screenPoint);
+                } else {
+                    pickClickedProperty(screenPoint);
+                }
+            }
+        });
+    }
 
-                // Add a listener to process the result once it's available
-                future.addDoneListener(() -> {
-                    try {
-                        // Get the result of the identify operation
-                        IdentifyGraphicsOverlayResult result = future.get();
-
-                        // Retrieve the list of identified graphics
-                        List<Graphic> graphics = result.getGraphics();
-
-                        if (!graphics.isEmpty()) {
-                            // Get the first graphic that was clicked
-                            Graphic clickedGraphic = graphics.get(0);
-
-                            // Retrieve the accountID attribute
-                            Integer accountID = (Integer) clickedGraphic.getAttributes().get("accountID");
-
-                            if (accountID != null) {
-                                // Use the accountID to find the PropertyAssessment object
-                                PropertyAssessment property = propertiesClass.getPropertyByAccountID(accountID);
-
-                                // Display the property info in the info area
-                                if (property != null) {
-                                    displayPropertyInfo(property);
-                                    displayPieChart(property);
-                                    highlightSelectedProperty(property);
-                                }
-                            }
+    // Resolves a click with the property spatial index, right away on the FX thread, instead of
+    // an identify round trip over every graphic on the overlay. Works the same while clusters or
+    // tiles are drawn in place of the properties (as in the starting view), since the shown rows
+    // are still known.
+    private void pickClickedProperty(Point2D screenPoint) {
+        if (shownRows == null) {
+            return;
+        }
+
+        List<PropertyAssessment> clickedProperties;
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.CLICK)) {
+            Point location = mapView.screenToLocation(screenPoint);
+            if (location == null) {
+                return;
+            }
+            double tolerance = clickTolerance * mapView.getUnitsPerDensityIndependentPixel();
+            clickedProperties = propertiesClass.getPropertiesNear(location.getX(), location.getY(), tolerance, shownRows);
+            span.setItems(clickedProperties.size());
+        }
+
+        if (!clickedProperties.isEmpty()) {
+            showClickedProperties(clickedProperties);
+        }
+    }
+
+    private void identifyClickedProperty(Point2D screenPoint) {
+        Metrics.Span span = Metrics.start(Metrics.Phase.CLICK); // Ends when the identify result arrives
+
+        // Perform a hit test on the GraphicsOverlay
+        ListenableFuture<IdentifyGraphicsOverlayResult> future = mapView.identifyGraphicsOverlayAsync(graphicsOverlay, screenPoint, clickTolerance, false, 1);
+
+        // Add a listener to process the result once it's available
+        future.addDoneListener(() -> {
+            try {
+                // Get the result of the identify operation
+                IdentifyGraphicsOverlayResult result = future.get();
+                span.close();
+
+                // Retrieve the list of identified graphics
+                List<Graphic> graphics = result.getGraphics();
+
+                if (!graphics.isEmpty()) {
+                    // Get the first graphic that was clicked
+                    Graphic clickedGraphic = graphics.get(0);
+
+                    // Retrieve the accountID attribute
+                    Integer accountID = (Integer) clickedGraphic.getAttributes().get(PropertyOverlay.ACCOUNT_ID_ATTRIBUTE);
+
+                    if (accountID != null) {
+                        // Use the accountID to find the PropertyAssessment object
+                        PropertyAssessment property = propertiesClass.getPropertyByAccountID(accountID);
+
+                        // Display the property info in the info area
+                        if (property != null) {
+                            showClickedProperties(List.of(property));
                         }
-                    } catch (Exception e) {
-                        e.printStackTrace(); // Handle exceptions such as InterruptedException or ExecutionException
                     }
-                });
+                }
+            } catch (Exception e) {
+                e.printStackTrace(); // Handle exceptions such as InterruptedException or ExecutionException
             }
         });
     }
 
+    // Shows the first clicked property and lists any others stacked at the same location
+    private void showClickedProperties(List<PropertyAssessment> clickedProperties) {
+        PropertyAssessment property = clickedProperties.get(0);
+        displayPropertyInfo(property);
+
+        if (clickedProperties.size() > 1) {
+            StringBuilder stacked = new StringBuilder(String.format("%n%d properties at this location:%n", clickedProperties.size()));
+            for (PropertyAssessment stackedProperty : clickedProperties) {
+                stacked.append(String.format("%d - %s - $%s%n", stackedProperty.getAccountID(), stackedProperty.getAddress(),
+                        numberFormat.format(stackedProperty.getAssessedValue())));
+            }
+            propertyInfoArea.appendText(stacked.toString());
+        }
+
+        displayPieChart(property);
+        highlightSelectedProperty(property);
+    }
+
     @Override
     public void stop() {
+        if (queryService != null) {
+            queryService.stop();
+        }
+        if (queryScheduler != null) {
+            queryScheduler.shutdown();
+            clusterScheduler.shutdown();
+            heatmapScheduler.shutdown();
+            if (fxStallDetector != null) {
+                fxStallDetector.stop();
+            }
+            // One table with the phases, counters, pools and FX thread, as the Diagnostics pane shows it
+            System.out.print(Metrics.summary());
+            executors.shutdown();
+        }
         if (mapView != null) {
             mapView.dispose();
         }
@@ -0,0 +1,59 @@
+package com.mycompany.app;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The app's shared threads. Scans, filters and rendering prep run on one CPU pool sized to the
+// machine, so a burst of clicks queues up instead of oversubscribing the cores. It is a fork/join
+// pool, so parallel streams inside its tasks split their work over the same bounded set of threads.
+// File and network work, which mostly waits, gets its own growing pool of I/O threads.
+public class AppExecutors {
+    // Instance variables:
+    private final MonitoredExecutor cpu;
+    private final MonitoredExecutor io;
+    private final ScheduledExecutorService timer;
+
+    // Constructor:
+    public AppExecutors() {
+        AtomicInteger cpuThreads = new AtomicInteger();
+        ForkJoinPool cpuPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("cpu-" + cpuThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+        cpu = new MonitoredExecutor("cpu", cpuPool);
+
+        // Java 17 has no virtual threads; cached daemon threads are the closest fit for blocking I/O
+        AtomicInteger ioThreads = new AtomicInteger();
+        ExecutorService ioPool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "io-" + ioThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        io = new MonitoredExecutor("io", ioPool);
+
+        // Only waits out delays (such as query coalescing) and hands the real work to a pool
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Getters:
+    public MonitoredExecutor cpu() {return cpu;}
+    public MonitoredExecutor io() {return io;}
+    public ScheduledExecutorService timer() {return timer;}
+
+    // Methods:
+    public void shutdown() {
+        timer.shutdownNow();
+        cpu.shutdown();
+        io.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package com.mycompany.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Altered version of the Spectral 11 color palette, centered on an assessed value. The map,
+// legend and any pre-rendered output share these classes so a property is the same color everywhere.
+public class AssessmentColorScale {
+    // Color classes, lowest to highest value
+    public static final int ZERO = 0;
+    public static final int CENTER = 6;
+    public static final String[] CLASS_COLORS = {
+            "#000000", // Zero value
+            "#4b2ca3", // Royal Blue, -50% off of center
+            "#0077bb", // Bright Azure, -30% off of center
+            "#00b891", // Vivid Turquoise, -15% off of center
+            "#6ccc63", // Spring Green, -5% off of center
+            "#d9ed4c", // Bright Lime, -2% off of center
+            "#ffff66", // Pure Yellow, at center
+            "#ffcc33", // Bright Amber, +2% off of center
+            "#ff8c00", // Vivid Orange, +5% off of center
+            "#e64a19", // Deep Coral, +15% of center
+            "#c70039", // Crimson, +30% of center
+            "#800026"  // Dark Burgundy, +50% of center
+    };
+
+    // Upper bound of classes 1-5 and 7-10 as a fraction of the center
+    private static final double[] BELOW_CENTER = {0.5, 0.70, 0.85, 0.95, 0.98};
+    private static final double[] ABOVE_CENTER = {1.02, 1.05, 1.15, 1.30};
+
+    // Methods:
+    public static int getClassCount() {
+        return CLASS_COLORS.length;
+    }
+
+    public static int classOf(long assessedValue, long center) {
+        if (assessedValue == 0) {
+            return ZERO;
+        }
+        for (int i = 0; i < BELOW_CENTER.length; i++) {
+            if (assessedValue <= center * BELOW_CENTER[i]) return 1 + i;
+        }
+        if (assessedValue == center) {
+            return CENTER;
+        }
+        for (int i = 0; i < ABOVE_CENTER.length; i++) {
+            if (assessedValue <= center * ABOVE_CENTER[i]) return CENTER + 1 + i;
+        }
+        return CLASS_COLORS.length - 1;
+    }
+
+    // The same classes as non-overlapping (min, max] value ranges, in ascending order, for a
+    // class-breaks renderer. Assessed values are whole dollars, so every boundary sits on a half
+    // dollar and it doesn't matter whether a renderer treats the ends as inclusive or exclusive.
+    public static List<ValueBreak> getBreaks(long center) {
+        List<ValueBreak> breaks = new ArrayList<>();
+
+        // Negative (missing) values fall through the zero check into the lowest class
+        addBreak(breaks, -Double.MAX_VALUE, -0.5, 1);
+        addBreak(breaks, -0.5, 0.5, ZERO);
+
+        double previous = 0.5;
+        for (int i = 0; i < BELOW_CENTER.length; i++) {
+            double upper = atOrBelow(center * BELOW_CENTER[i]);
+            addBreak(breaks, previous, upper, 1 + i);
+            previous = Math.max(previous, upper);
+        }
+
+        // Values just under the center skip the center check and land in the first class above it
+        addBreak(breaks, previous, center - 0.5, CENTER + 1);
+        previous = Math.max(previous, center - 0.5);
+        addBreak(breaks, previous, center + 0.5, CENTER);
+        previous = Math.max(previous, center + 0.5);
+
+        for (int i = 0; i < ABOVE_CENTER.length; i++) {
+            double upper = atOrBelow(center * ABOVE_CENTER[i]);
+            addBreak(breaks, previous, upper, CENTER + 1 + i);
+            previous = Math.max(previous, upper);
+        }
+        addBreak(breaks, previous, Double.MAX_VALUE, CLASS_COLORS.length - 1);
+
+        return breaks;
+    }
+
+    // Half-dollar boundary that keeps every whole value <= threshold below it
+    private static double atOrBelow(double threshold) {
+        return Math.floor(threshold) + 0.5;
+    }
+
+    // Ranges that earlier, higher-priority classes already cover are dropped
+    private static void addBreak(List<ValueBreak> breaks, double minValue, double maxValue, int colorClass) {
+        if (!breaks.isEmpty()) {
+            minValue = Math.max(minValue, breaks.get(breaks.size() - 1).getMaxValue());
+        }
+        if (maxValue > minValue) {
+            breaks.add(new ValueBreak(minValue, maxValue, colorClass));
+        }
+    }
+
+    public static class ValueBreak {
+        // Instance variables:
+        private final double minValue;
+        private final double maxValue;
+        private final int colorClass;
+
+        // Constructor:
+        public ValueBreak(double minValue, double maxValue, int colorClass) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.colorClass = colorClass;
+        }
+
+        // Getters:
+        public double getMinValue() {return minValue;}
+        public double getMaxValue() {return maxValue;}
+        public int getColorClass() {return colorClass;}
+    }
+}
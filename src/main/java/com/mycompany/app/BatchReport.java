@@ -0,0 +1,224 @@
+package com.mycompany.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Headless reporting over the property data, for scheduled jobs on servers without a display. Loads
+// the CSV once, runs every filter spec (see FilterExpression.parse) and writes assessed value
+// statistics per neighborhood and per ward for each one, one report file per filter. Filters and
+// the groups within them are processed in parallel across all cores.
+//
+// Usage: BatchReport <csv file> [--filter <spec>]... [--filters <file>] [--format csv|json] [--output <directory>]
+public class BatchReport {
+    public enum Format {CSV, JSON}
+
+    // Instance variables:
+    private final PropertyAssessments properties;
+    private final Format format;
+    private final Path outputDirectory;
+
+    // Constructor:
+    public BatchReport(PropertyAssessments properties, Format format, Path outputDirectory) {
+        this.properties = properties;
+        this.format = format;
+        this.outputDirectory = outputDirectory;
+    }
+
+    // Methods:
+    // Writes a report for each filter spec and returns the files, in the same order as the specs
+    public List<Path> run(List<String> filterSpecs) throws IOException {
+        // Parse everything first so a typo fails the job before any work is done
+        List<FilterExpression> filters = filterSpecs.stream()
+                .map(FilterExpression::parse)
+                .collect(Collectors.toList());
+
+        Files.createDirectories(outputDirectory);
+        properties.getColumnStatistics(); // Built once here rather than raced for by the workers
+
+        try {
+            return IntStream.range(0, filters.size())
+                    .parallel()
+                    .mapToObj(i -> writeReport(i + 1, filterSpecs.get(i), filters.get(i)))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path writeReport(int number, String filterSpec, FilterExpression filter) {
+        List<PropertyAssessment> matches = properties.filter(filter);
+        List<GroupStatistics> neighborhoods = groupStatistics(matches, property -> property.getNeighborhood().getNeighborhoodName());
+        List<GroupStatistics> wards = groupStatistics(matches, property -> property.getNeighborhood().getWard());
+
+        Path file = outputDirectory.resolve("report-" + number + "." + format.name().toLowerCase(Locale.ROOT));
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            if (format == Format.JSON) {
+                writeJson(writer, filterSpec, matches.size(), neighborhoods, wards);
+            } else {
+                writeCsv(writer, filterSpec, neighborhoods, wards);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    // Statistics for each distinct group, in name order
+    private static List<GroupStatistics> groupStatistics(List<PropertyAssessment> matches, Function<PropertyAssessment, String> groupOf) {
+        Map<String, List<Long>> valuesByGroup = matches.parallelStream()
+                .collect(Collectors.groupingByConcurrent(groupOf,
+                        Collectors.mapping(PropertyAssessment::getAssessedValue, Collectors.toList())));
+
+        return new TreeMap<>(valuesByGroup).entrySet().parallelStream()
+                .map(entry -> GroupStatistics.of(entry.getKey(), entry.getValue().stream().mapToLong(Long::longValue).toArray()))
+                .collect(Collectors.toList());
+    }
+
+    private static void writeCsv(Writer writer, String filterSpec, List<GroupStatistics> neighborhoods, List<GroupStatistics> wards) throws IOException {
+        writer.write("filter,grouping,group,count,min,max,mean,median\n");
+        for (GroupStatistics group : neighborhoods) {
+            writeCsvRow(writer, filterSpec, "neighborhood", group);
+        }
+        for (GroupStatistics group : wards) {
+            writeCsvRow(writer, filterSpec, "ward", group);
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, String filterSpec, String grouping, GroupStatistics group) throws IOException {
+        writer.write(String.join(",", csvField(filterSpec), grouping, csvField(group.getName()),
+                Long.toString(group.getCount()), Long.toString(group.getMin()), Long.toString(group.getMax()),
+                Long.toString(group.getMean()), Long.toString(group.getMedian())));
+        writer.write('\n');
+    }
+
+    // Quotes a field only when it needs it
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static void writeJson(Writer writer, String filterSpec, int matchCount, List<GroupStatistics> neighborhoods, List<GroupStatistics> wards) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name("filter").value(filterSpec);
+        json.name("matches").value(matchCount);
+        json.name("neighborhoods");
+        writeJsonGroups(json, neighborhoods);
+        json.name("wards");
+        writeJsonGroups(json, wards);
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeJsonGroups(JsonWriter json, List<GroupStatistics> groups) throws IOException {
+        json.beginArray();
+        for (GroupStatistics group : groups) {
+            json.beginObject();
+            json.name("name").value(group.getName());
+            json.name("count").value(group.getCount());
+            json.name("min").value(group.getMin());
+            json.name("max").value(group.getMax());
+            json.name("mean").value(group.getMean());
+            json.name("median").value(group.getMedian());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchReport <csv file> [--filter <spec>]... [--filters <file>] [--format csv|json] [--output <directory>]");
+            System.exit(1);
+        }
+
+        List<String> filterSpecs = new ArrayList<>();
+        Format format = Format.CSV;
+        Path outputDirectory = Path.of("reports");
+
+        for (int i = 1; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                System.err.println("Missing value for " + args[i]);
+                System.exit(1);
+            }
+            switch (args[i]) {
+                case "--filter" -> filterSpecs.add(args[++i]);
+                case "--filters" -> Files.readAllLines(Path.of(args[++i])).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .forEach(filterSpecs::add);
+                case "--format" -> format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                case "--output" -> outputDirectory = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+        if (filterSpecs.isEmpty()) {
+            filterSpecs.add("all");
+        }
+
+        long startTime = System.nanoTime();
+        PropertyAssessments properties = new PropertyAssessments(args[0]);
+        System.out.printf("Loaded %d properties in %.2f s%n", properties.getNumberOfRecords(), (System.nanoTime() - startTime) / 1e9);
+
+        startTime = System.nanoTime();
+        List<Path> reports = new BatchReport(properties, format, outputDirectory).run(filterSpecs);
+        System.out.printf("Wrote %d reports to %s in %.2f s%n", reports.size(), outputDirectory.toAbsolutePath(), (System.nanoTime() - startTime) / 1e9);
+    }
+
+    // Assessed value statistics for one group, computed the same way as PropertyAssessments'
+    public static class GroupStatistics {
+        // Instance variables:
+        private final String name;
+        private final long count;
+        private final long min;
+        private final long max;
+        private final long mean;
+        private final long median;
+
+        // Constructor:
+        public GroupStatistics(String name, long count, long min, long max, long mean, long median) {
+            this.name = name;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.median = median;
+        }
+
+        public static GroupStatistics of(String name, long[] values) {
+            Arrays.sort(values);
+            int size = values.length;
+            long sum = 0;
+            for (long value : values) {
+                sum += value;
+            }
+            long median = size % 2 == 0 ? (values[size / 2] + values[size / 2 - 1]) / 2 : values[size / 2];
+            return new GroupStatistics(name, size, values[0], values[size - 1], sum / size, median);
+        }
+
+        // Getters:
+        public String getName() {return name;}
+        public long getCount() {return count;}
+        public long getMin() {return min;}
+        public long getMax() {return max;}
+        public long getMean() {return mean;}
+        public long getMedian() {return median;}
+    }
+}
@@ -0,0 +1,102 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+
+// UTF-8 Writer over an NIO channel. Characters are encoded straight into one direct buffer that is
+// written out whenever it fills, so memory use is fixed no matter how much is written.
+public class ChannelWriter extends Writer {
+    // Instance variables:
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long bytesWritten;
+
+    // The high half of a surrogate pair that ended the last write, held until its low half arrives
+    // (writers like JsonWriter write one char at a time); 0 when there is none
+    private char pendingHighSurrogate;
+
+    // Constructor:
+    public ChannelWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    // Getters:
+    public long getBytesWritten() {return bytesWritten + buffer.position();}
+
+    // Methods:
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        encode(CharBuffer.wrap(chars, offset, length));
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        encode(CharBuffer.wrap(text, offset, offset + length));
+    }
+
+    @Override
+    public Writer append(CharSequence text) throws IOException {
+        encode(CharBuffer.wrap(text));
+        return this;
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        if (pendingHighSurrogate != 0 && chars.hasRemaining()) {
+            encodeFully(CharBuffer.wrap(new char[]{pendingHighSurrogate, chars.get()}));
+            pendingHighSurrogate = 0;
+        }
+        encodeFully(chars);
+
+        // The encoder leaves a trailing high surrogate unread until it sees what follows
+        if (chars.hasRemaining()) {
+            pendingHighSurrogate = chars.get();
+        }
+    }
+
+    private void encodeFully(CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pendingHighSurrogate != 0) {
+                throw new MalformedInputException(1); // A pair that was never completed
+            }
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
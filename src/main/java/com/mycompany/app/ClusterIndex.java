@@ -0,0 +1,154 @@
+package com.mycompany.app;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Grid clusters of property locations for every zoom level where individual points would be an
+// unreadable blob. Each level's cell is a fixed number of screen pixels wide, so a cluster covers
+// the same screen area at every zoom. Clusters keep their count, centroid and median assessed value.
+public class ClusterIndex {
+    // Zoom levels (standard web map tiling) that get clusters; from MAX_CLUSTER_ZOOM + 1 on, properties are drawn individually
+    public static final int MIN_CLUSTER_ZOOM = 8;
+    public static final int MAX_CLUSTER_ZOOM = 15;
+    private static final double CLUSTER_CELL_PIXELS = 64;
+
+    // Instance variables:
+    private final ClusterLevel[] levels = new ClusterLevel[MAX_CLUSTER_ZOOM - MIN_CLUSTER_ZOOM + 1];
+
+    // Constructor:
+    private ClusterIndex() {
+    }
+
+    // Methods:
+    // Clusters the given rows at every cluster zoom level. Returns null if cancelled.
+    public static ClusterIndex build(PropertyColumns columns, int[] rows, BooleanSupplier cancelled) {
+        // Keep only rows with a location; they are already projected to Web Mercator
+        int[] located = Arrays.stream(rows)
+                .filter(columns::hasLocation)
+                .toArray();
+        double[] xs = new double[located.length];
+        double[] ys = new double[located.length];
+        for (int i = 0; i < located.length; i++) {
+            xs[i] = columns.getX(located[i]);
+            ys[i] = columns.getY(located[i]);
+        }
+
+        // Rank the points by value once; within a cell, sorting by rank gives the median directly
+        Integer[] byValue = IntStream.range(0, located.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(byValue, Comparator.comparingLong(i -> columns.getAssessedValue(located[i])));
+        long[] valueByRank = new long[located.length];
+        int[] rankOf = new int[located.length];
+        for (int rank = 0; rank < byValue.length; rank++) {
+            rankOf[byValue[rank]] = rank;
+            valueByRank[rank] = columns.getAssessedValue(located[byValue[rank]]);
+        }
+
+        ClusterIndex index = new ClusterIndex();
+        for (int zoom = MIN_CLUSTER_ZOOM; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            index.levels[zoom - MIN_CLUSTER_ZOOM] = buildLevel(zoom, xs, ys, rankOf, valueByRank);
+        }
+        return index;
+    }
+
+    private static ClusterLevel buildLevel(int zoom, double[] xs, double[] ys, int[] rankOf, long[] valueByRank) {
+        int count = xs.length;
+        if (count == 0) {
+            return new ClusterLevel(zoom, new double[0], new double[0], new int[0], new long[0]);
+        }
+
+        double cellSize = CLUSTER_CELL_PIXELS * WebMercator.resolution(zoom);
+        double minX = Arrays.stream(xs).min().getAsDouble();
+        double minY = Arrays.stream(ys).min().getAsDouble();
+        long columns = (long) ((Arrays.stream(xs).max().getAsDouble() - minX) / cellSize) + 1;
+
+        // Cell id in the high 32 bits, value rank in the low 32: sorting groups each cell's points
+        // together, ordered by value
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long column = (long) ((xs[i] - minX) / cellSize);
+            long row = (long) ((ys[i] - minY) / cellSize);
+            keys[i] = ((row * columns + column) << 32) | rankOf[i];
+        }
+        int[] pointOfRank = new int[count];
+        for (int i = 0; i < count; i++) {
+            pointOfRank[rankOf[i]] = i;
+        }
+        Arrays.sort(keys);
+
+        double[] clusterXs = new double[count];
+        double[] clusterYs = new double[count];
+        int[] clusterCounts = new int[count];
+        long[] clusterMedians = new long[count];
+        int clusters = 0;
+
+        int start = 0;
+        while (start < count) {
+            long cell = keys[start] >>> 32;
+            int end = start;
+            double sumX = 0, sumY = 0;
+            while (end < count && (keys[end] >>> 32) == cell) {
+                int point = pointOfRank[(int) keys[end]];
+                sumX += xs[point];
+                sumY += ys[point];
+                end++;
+            }
+
+            int size = end - start;
+            int lowerMiddle = (int) keys[start + (size - 1) / 2];
+            int upperMiddle = (int) keys[start + size / 2];
+
+            clusterXs[clusters] = sumX / size;
+            clusterYs[clusters] = sumY / size;
+            clusterCounts[clusters] = size;
+            clusterMedians[clusters] = (valueByRank[lowerMiddle] + valueByRank[upperMiddle]) / 2;
+            clusters++;
+            start = end;
+        }
+
+        return new ClusterLevel(zoom,
+                Arrays.copyOf(clusterXs, clusters), Arrays.copyOf(clusterYs, clusters),
+                Arrays.copyOf(clusterCounts, clusters), Arrays.copyOf(clusterMedians, clusters));
+    }
+
+    public static boolean isClustered(int zoom) {
+        return zoom <= MAX_CLUSTER_ZOOM;
+    }
+
+    // Clusters for a zoom level; zooms further out than MIN_CLUSTER_ZOOM use the coarsest level
+    public ClusterLevel getLevel(int zoom) {
+        int clamped = Math.max(MIN_CLUSTER_ZOOM, Math.min(MAX_CLUSTER_ZOOM, zoom));
+        return levels[clamped - MIN_CLUSTER_ZOOM];
+    }
+
+    public static class ClusterLevel {
+        // Instance variables:
+        private final int zoom;
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] counts;
+        private final long[] medianValues;
+
+        // Constructor:
+        public ClusterLevel(int zoom, double[] xs, double[] ys, int[] counts, long[] medianValues) {
+            this.zoom = zoom;
+            this.xs = xs;
+            this.ys = ys;
+            this.counts = counts;
+            this.medianValues = medianValues;
+        }
+
+        // Getters:
+        public int getZoom() {return zoom;}
+        public int size() {return counts.length;}
+        // Centroid in Web Mercator meters
+        public double getX(int cluster) {return xs[cluster];}
+        public double getY(int cluster) {return ys[cluster];}
+        public int getCount(int cluster) {return counts[cluster];}
+        public long getMedianValue(int cluster) {return medianValues[cluster];}
+    }
+}
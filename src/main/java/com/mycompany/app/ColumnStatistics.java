@@ -0,0 +1,122 @@
+package com.mycompany.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+// Per-column statistics and indexes used to plan filters. Categorical columns keep the rows for
+// each distinct value (so a count is also an index), and assessed values are kept sorted
+// alongside their rows so range predicates can be estimated and answered with binary search.
+public class ColumnStatistics {
+    // Instance variables:
+    private final List<PropertyAssessment> properties;
+    private final Map<FilterExpression.Field, Map<String, int[]>> categoricalRows = new HashMap<>();
+    private final long[] sortedValues;
+    private final int[] rowsByValue;
+    private final SpatialIndex spatialIndex;
+
+    // Constructor:
+    public ColumnStatistics(List<PropertyAssessment> properties, SpatialIndex spatialIndex) {
+        this.properties = properties;
+        this.spatialIndex = spatialIndex;
+
+        for (FilterExpression.Field field : FilterExpression.Field.values()) {
+            if (field.isCategorical()) {
+                categoricalRows.put(field, buildCategoricalIndex(field));
+            }
+        }
+
+        rowsByValue = IntStream.range(0, properties.size())
+                .boxed()
+                .sorted(Comparator.comparingLong(row -> properties.get(row).getAssessedValue()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        sortedValues = new long[rowsByValue.length];
+        for (int i = 0; i < rowsByValue.length; i++) {
+            sortedValues[i] = properties.get(rowsByValue[i]).getAssessedValue();
+        }
+    }
+
+    // Getters:
+    public List<PropertyAssessment> getProperties() {return properties;}
+    public int getNumberOfRecords() {return properties.size();}
+    public SpatialIndex getSpatialIndex() {return spatialIndex;}
+
+    // Methods:
+    private Map<String, int[]> buildCategoricalIndex(FilterExpression.Field field) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        Set<String> propertyValues = new LinkedHashSet<>();
+
+        for (int row = 0; row < properties.size(); row++) {
+            propertyValues.clear();
+            field.collectValues(properties.get(row), propertyValues);
+            for (String value : propertyValues) {
+                rows.computeIfAbsent(value, key -> new ArrayList<>()).add(row);
+            }
+        }
+
+        Map<String, int[]> index = new HashMap<>();
+        rows.forEach((value, valueRows) -> index.put(value, valueRows.stream().mapToInt(Integer::intValue).toArray()));
+        return index;
+    }
+
+    // Rows whose field has the given value, in ascending row order. Never null.
+    public int[] getRows(FilterExpression.Field field, String value) {
+        int[] rows = categoricalRows.get(field).get(field.normalize(value));
+        return rows == null ? new int[0] : rows;
+    }
+
+    public int getCount(FilterExpression.Field field, String value) {
+        return getRows(field, value).length;
+    }
+
+    public Set<String> getDistinctValues(FilterExpression.Field field) {
+        return categoricalRows.get(field).keySet();
+    }
+
+    // Number of properties with minValue <= assessed value <= maxValue
+    public int countValuesBetween(long minValue, long maxValue) {
+        if (minValue > maxValue) {
+            return 0;
+        }
+        return upperBound(maxValue) - lowerBound(minValue);
+    }
+
+    // Rows with minValue <= assessed value <= maxValue, in ascending row order
+    public int[] getRowsWithValueBetween(long minValue, long maxValue) {
+        if (minValue > maxValue) {
+            return new int[0];
+        }
+        int[] rows = Arrays.copyOfRange(rowsByValue, lowerBound(minValue), upperBound(maxValue));
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    // First position whose value is >= target
+    private int lowerBound(long target) {
+        int low = 0, high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] < target) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // First position whose value is > target
+    private int upperBound(long target) {
+        int low = 0, high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] <= target) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,196 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+// Writes a set of rows (such as the properties currently shown on the map) to CSV or GeoJSON. Rows
+// are read straight from one dataset snapshot, so a reload during the export can't shift them, and
+// written through a fixed-size channel buffer, so nothing proportional to the export is ever held
+// in memory. CSV uses the same 18 columns as the city's extract, so an export can be opened in the
+// viewer again.
+//
+// Can be run on its own: DatasetExport <csv file> <output .csv or .geojson> [filter spec]
+public class DatasetExport {
+    public enum Format {CSV, GEOJSON}
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int PROGRESS_INTERVAL_ROWS = 4096;
+
+    // Instance variables:
+    private final DatasetSnapshot snapshot;
+    private final Format format;
+
+    // Constructor:
+    // Row numbers given to write() are positions in this snapshot
+    public DatasetExport(DatasetSnapshot snapshot, Format format) {
+        this.snapshot = snapshot;
+        this.format = format;
+    }
+
+    // Methods:
+    // GeoJSON for .geojson and .json files, CSV otherwise
+    public static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".geojson") || name.endsWith(".json") ? Format.GEOJSON : Format.CSV;
+    }
+
+    // Writes the given rows in row order. The file only appears once complete; returns false, leaving
+    // no file behind, if cancelled.
+    public boolean write(Path file, BitSet rows, BooleanSupplier cancelled, BiConsumer<Integer, Integer> progress) throws IOException {
+        if (rows.length() > snapshot.getNumberOfRecords()) {
+            throw new IllegalArgumentException("Row " + (rows.length() - 1) + " is not in a snapshot of " + snapshot.getNumberOfRecords() + " properties.");
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int total = rows.cardinality();
+        int done = 0;
+
+        // Whatever stops the export early, the partial file is removed
+        boolean moved = false;
+        try {
+            try (Metrics.Span span = Metrics.start(Metrics.Phase.EXPORT);
+                 ChannelWriter writer = new ChannelWriter(FileChannel.open(temporary,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), BUFFER_SIZE)) {
+                JsonWriter json = new JsonWriter(writer);
+                writeHeader(writer, json);
+
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    if (done % PROGRESS_INTERVAL_ROWS == 0) {
+                        if (cancelled.getAsBoolean()) {
+                            break;
+                        }
+                        progress.accept(done, total);
+                    }
+
+                    if (format == Format.GEOJSON) {
+                        writeFeature(json, row);
+                    } else {
+                        writeCsvRow(writer, row);
+                    }
+                    done++;
+                }
+
+                writeFooter(writer, json);
+                span.setItems(done);
+            }
+
+            if (done < total) {
+                return false;
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        progress.accept(total, total);
+        return true;
+    }
+
+    private void writeHeader(ChannelWriter writer, JsonWriter json) throws IOException {
+        if (format == Format.GEOJSON) {
+            json.beginObject();
+            json.name("type").value("FeatureCollection");
+            json.name("features").beginArray();
+        } else {
+            writer.write(SyntheticDataset.HEADER);
+            writer.write('\n');
+        }
+    }
+
+    private void writeFooter(ChannelWriter writer, JsonWriter json) throws IOException {
+        if (format == Format.GEOJSON) {
+            json.endArray();
+            json.endObject();
+            writer.write('\n');
+        }
+    }
+
+    private void writeCsvRow(ChannelWriter writer, int row) throws IOException {
+        PropertyAssessment property = snapshot.getProperties().get(row);
+        Address address = property.getAddress();
+        Neighborhood neighborhood = property.getNeighborhood();
+        AssessmentClass assessmentClass = property.getAssessmentClass();
+        boolean located = snapshot.getColumns().hasLocation(row);
+
+        // Fields the loader read as -1 were blank in the source
+        writer.write(String.join(",",
+                Integer.toString(property.getAccountID()),
+                number(address.getSuite()),
+                number(address.getHouseNumber()),
+                address.getStreetName(),
+                property.getGarage(),
+                number(neighborhood.getNeighborhoodID()),
+                neighborhood.getNeighborhoodName(),
+                neighborhood.getWard(),
+                number(property.getAssessedValue()),
+                located ? Double.toString(property.getLocation().getLat()) : "",
+                located ? Double.toString(property.getLocation().getLng()) : "",
+                located ? property.getLocation().getPoint() : "",
+                number(assessmentClass.getAssessmentPercentage1()),
+                number(assessmentClass.getAssessmentPercentage2()),
+                number(assessmentClass.getAssessmentPercentage3()),
+                assessmentClass.getAssessmentClass1(),
+                assessmentClass.getAssessmentClass2(),
+                assessmentClass.getAssessmentClass3()));
+        writer.write('\n');
+    }
+
+    private static String number(long value) {
+        return value == -1 ? "" : Long.toString(value);
+    }
+
+    private void writeFeature(JsonWriter json, int row) throws IOException {
+        PropertyAssessment property = snapshot.getProperties().get(row);
+        Neighborhood neighborhood = property.getNeighborhood();
+
+        json.beginObject();
+        json.name("type").value("Feature");
+        json.name("geometry");
+        if (snapshot.getColumns().hasLocation(row)) {
+            json.beginObject();
+            json.name("type").value("Point");
+            json.name("coordinates").beginArray()
+                    .value(property.getLocation().getLng())
+                    .value(property.getLocation().getLat())
+                    .endArray();
+            json.endObject();
+        } else {
+            json.nullValue();
+        }
+        json.name("properties").beginObject();
+        json.name("accountID").value(property.getAccountID());
+        json.name("address").value(property.getAddress().toString());
+        json.name("garage").value(property.getGarage());
+        json.name("neighborhood").value(neighborhood.getNeighborhoodName());
+        json.name("ward").value(neighborhood.getWard());
+        json.name("assessedValue").value(property.getAssessedValue());
+        json.name("assessmentClass").value(property.getAssessmentClass().toString());
+        json.endObject();
+        json.endObject();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DatasetExport <csv file> <output .csv or .geojson> [filter spec]");
+            System.exit(1);
+        }
+
+        DatasetSnapshot snapshot = new PropertyAssessments(args[0]).getSnapshot();
+        Path file = Path.of(args[1]);
+        BitSet rows = snapshot.filterRows(FilterExpression.parse(args.length > 2 ? args[2] : "all"), () -> false);
+
+        long startTime = System.nanoTime();
+        new DatasetExport(snapshot, formatOf(file)).write(file, rows, () -> false, (done, total) -> { });
+        System.out.printf("Exported %d properties to %s in %.2f s%n", rows.cardinality(), file.toAbsolutePath(), (System.nanoTime() - startTime) / 1e9);
+    }
+}
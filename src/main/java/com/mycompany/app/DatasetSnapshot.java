@@ -0,0 +1,331 @@
+package com.mycompany.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// One immutable version of the property data and everything derived from it. The property list
+// never changes after construction and the indexes are built at most once, so any number of
+// threads can read a snapshot without locking and always see the same, consistent data.
+// PropertyAssessments publishes a new snapshot when the data changes; readers that started on an
+// older one finish on it.
+public class DatasetSnapshot {
+    private static final int SCAN_BLOCK_SIZE = 1024;
+    private static final int POLYGON_CHUNK_SIZE = 4096;
+
+    // Instance variables:
+    private final long version;
+    private final List<PropertyAssessment> properties;
+    private final PropertyColumns columns;
+
+    // Built on first use; volatile so a finished index is visible to every reader without a lock
+    private volatile Map<Integer, PropertyAssessment> propertyMap;
+    private volatile SpatialIndex spatialIndex;
+    private volatile ColumnStatistics columnStatistics;
+    private volatile Long median;
+
+    // Constructor:
+    public DatasetSnapshot(long version, List<PropertyAssessment> properties) {
+        this.version = version;
+        this.properties = Collections.unmodifiableList(new ArrayList<>(properties));
+
+        // Project every location to the basemap's spatial reference once, up front
+        this.columns = new PropertyColumns(this.properties);
+    }
+
+    // Getters:
+    public long getVersion() {return version;}
+    public List<PropertyAssessment> getProperties() {return properties;}
+    public PropertyColumns getColumns() {return columns;}
+
+    // Methods:
+    public int getNumberOfRecords() {
+        return properties.size();
+    }
+
+    public long getMinValue() {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.STATISTICS)) {
+            long minValue = scanValues(Long.MAX_VALUE, Math::min);
+            span.setItems(properties.size());
+            return minValue;
+        }
+    }
+
+    public long getMaxValue() {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.STATISTICS)) {
+            long maxValue = scanValues(Long.MIN_VALUE, Math::max);
+            span.setItems(properties.size());
+            return maxValue;
+        }
+    }
+
+    public long getRange() {
+        return getMaxValue() - getMinValue();
+    }
+
+    public long getMean() {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.STATISTICS)) {
+            long sum = scanValues(0, Long::sum);
+            span.setItems(properties.size());
+            return sum / properties.size();
+        }
+    }
+
+    // Sorts every value, so it is computed once per snapshot
+    public long getMedian() {
+        Long median = this.median;
+        if (median == null) {
+            try (Metrics.Span span = Metrics.start(Metrics.Phase.STATISTICS)) {
+                long[] assessedValues = new long[columns.size()];
+                columns.getAssessedValues(0, assessedValues, assessedValues.length);
+                span.setItems(assessedValues.length);
+                median = medianOf(assessedValues);
+            }
+            this.median = median;
+        }
+        return median;
+    }
+
+    // Median of the given values, the same way as getMedian(); sorts them in place. For statistics
+    // over a filter result, without building a dataset around it.
+    public static long medianOf(long[] values) {
+        int size = values.length;
+        if (size == 0) {
+            throw new IllegalStateException("No properties available to calculate median.");
+        }
+        Arrays.sort(values);
+        return size % 2 == 0 ? (values[size / 2] + values[size / 2 - 1]) / 2 : values[size / 2];
+    }
+
+    public static long[] assessedValuesOf(List<PropertyAssessment> properties) {
+        return properties.stream().mapToLong(PropertyAssessment::getAssessedValue).toArray();
+    }
+
+    // Folds every assessed value into result, reading the value column a block at a time
+    private long scanValues(long result, LongBinaryOperator combine) {
+        if (properties.isEmpty()) {
+            throw new IllegalStateException("No properties available.");
+        }
+        long[] block = new long[SCAN_BLOCK_SIZE];
+        for (int from = 0; from < columns.size(); from += block.length) {
+            int count = Math.min(block.length, columns.size() - from);
+            columns.getAssessedValues(from, block, count);
+            for (int i = 0; i < count; i++) {
+                result = combine.applyAsLong(result, block[i]);
+            }
+        }
+        return result;
+    }
+
+    public PropertyAssessment getPropertyByAccountID(int accountID) {
+        return getPropertyMap().get(accountID);
+    }
+
+    // Grid index over longitude/latitude, built on first use. Rows are positions in getProperties().
+    public SpatialIndex getSpatialIndex() {
+        SpatialIndex index = spatialIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (spatialIndex == null) {
+                    double[] lngs = new double[properties.size()];
+                    double[] lats = new double[properties.size()];
+
+                    for (int i = 0; i < properties.size(); i++) {
+                        lngs[i] = columns.getLng(i);
+                        lats[i] = columns.getLat(i);
+                    }
+
+                    spatialIndex = new SpatialIndex(lngs, lats);
+                }
+                index = spatialIndex;
+            }
+        }
+        return index;
+    }
+
+    // Counts, categorical indexes and sorted values used by the filter planner, built on first use
+    public ColumnStatistics getColumnStatistics() {
+        ColumnStatistics statistics = columnStatistics;
+        if (statistics == null) {
+            SpatialIndex index = getSpatialIndex();
+            synchronized (this) {
+                if (columnStatistics == null) {
+                    columnStatistics = new ColumnStatistics(properties, index);
+                }
+                statistics = columnStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    // Account lookup map, built on first use (snapshots of filter results rarely need it)
+    private Map<Integer, PropertyAssessment> getPropertyMap() {
+        Map<Integer, PropertyAssessment> map = propertyMap;
+        if (map == null) {
+            synchronized (this) {
+                if (propertyMap == null) {
+                    propertyMap = Collections.unmodifiableMap(properties.stream()
+                            .collect(Collectors.toMap(PropertyAssessment::getAccountID, property -> property)));
+                }
+                map = propertyMap;
+            }
+        }
+        return map;
+    }
+
+    public List<PropertyAssessment> filter(FilterExpression expression) {
+        return filter(expression, () -> false);
+    }
+
+    // Plans the expression against the column statistics, then tests only the candidate rows of its
+    // most selective indexed predicate. Stops early (returning a partial list) once cancelled is true.
+    public List<PropertyAssessment> filter(FilterExpression expression, BooleanSupplier cancelled) {
+        return filter(expression, Integer.MAX_VALUE, cancelled);
+    }
+
+    // The first limit matches in row order; stops looking once it has them
+    public List<PropertyAssessment> filter(FilterExpression expression, int limit, BooleanSupplier cancelled) {
+        List<PropertyAssessment> matches = new ArrayList<>();
+        forEachMatch(expression, limit, cancelled, matches::add);
+        return matches;
+    }
+
+    // Hands the first limit matches, in row order, to action as they are found rather than collecting
+    // them first, so a caller can stream them out. Returns how many were handed over.
+    public int forEachMatch(FilterExpression expression, int limit, BooleanSupplier cancelled, Consumer<PropertyAssessment> action) {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.FILTER)) {
+            ColumnStatistics statistics = getColumnStatistics();
+            FilterExpression plan = expression.plan(statistics);
+            int[] candidates = plan.candidateRows(statistics);
+
+            int candidateCount = candidates == null ? properties.size() : candidates.length;
+            int matches = 0;
+
+            for (int i = 0; i < candidateCount && matches < limit; i++) {
+                if (i % 4096 == 0 && cancelled.getAsBoolean()) {
+                    break;
+                }
+
+                PropertyAssessment property = properties.get(candidates == null ? i : candidates[i]);
+                if (plan.test(property)) {
+                    action.accept(property);
+                    matches++;
+                }
+            }
+
+            span.setItems(matches);
+            Metrics.count("filter.candidates", candidateCount);
+            return matches;
+        }
+    }
+
+    // Same as filter, but returns the matching rows (positions in getProperties()) instead of copying
+    // the properties into a list
+    public BitSet filterRows(FilterExpression expression, BooleanSupplier cancelled) {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.FILTER)) {
+            ColumnStatistics statistics = getColumnStatistics();
+            FilterExpression plan = expression.plan(statistics);
+            int[] candidates = plan.candidateRows(statistics);
+
+            int candidateCount = candidates == null ? properties.size() : candidates.length;
+            BitSet matches = new BitSet(properties.size());
+
+            for (int i = 0; i < candidateCount; i++) {
+                if (i % 4096 == 0 && cancelled.getAsBoolean()) {
+                    break;
+                }
+
+                int row = candidates == null ? i : candidates[i];
+                if (plan.test(properties.get(row))) {
+                    matches.set(row);
+                }
+            }
+
+            span.setItems(matches.cardinality());
+            Metrics.count("filter.candidates", candidateCount);
+            return matches;
+        }
+    }
+
+    // The shown property nearest to (x, y) in Web Mercator within tolerance meters, followed by every
+    // other shown property at exactly the same spot (units in one building share a location).
+    // Empty if nothing shown is within reach. A null shownRows means every property.
+    public List<PropertyAssessment> getPropertiesNear(double x, double y, double tolerance, BitSet shownRows) {
+        // The spatial index is in longitude/latitude, so the search box is converted back
+        int[] candidates = getSpatialIndex().queryEnvelope(
+                WebMercator.lng(x - tolerance), WebMercator.lat(y - tolerance),
+                WebMercator.lng(x + tolerance), WebMercator.lat(y + tolerance));
+
+        int nearest = -1;
+        double nearestDistance = tolerance * tolerance;
+        for (int row : candidates) {
+            double dx = columns.getX(row) - x;
+            double dy = columns.getY(row) - y;
+            if (isShown(shownRows, row) && dx * dx + dy * dy <= nearestDistance) {
+                nearest = row;
+                nearestDistance = dx * dx + dy * dy;
+            }
+        }
+
+        List<PropertyAssessment> stacked = new ArrayList<>();
+        if (nearest == -1) {
+            return stacked;
+        }
+        stacked.add(properties.get(nearest));
+        for (int row : candidates) {
+            if (row != nearest && isShown(shownRows, row)
+                    && columns.getX(row) == columns.getX(nearest) && columns.getY(row) == columns.getY(nearest)) {
+                stacked.add(properties.get(row));
+            }
+        }
+        return stacked;
+    }
+
+    private static boolean isShown(BitSet shownRows, int row) {
+        return shownRows == null || shownRows.get(row);
+    }
+
+    public List<PropertyAssessment> getPropertiesInPolygon(SelectionPolygon polygon) {
+        return getPropertiesInPolygon(polygon, () -> false);
+    }
+
+    // The exact test runs in parallel over chunks of the bounding box candidates. Stops early
+    // (returning a partial list) once cancelled is true, checked before each chunk.
+    public List<PropertyAssessment> getPropertiesInPolygon(SelectionPolygon polygon, BooleanSupplier cancelled) {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.FILTER)) {
+            // Only properties inside the polygon's bounding box need the exact test
+            int[] candidates = getSpatialIndex().queryEnvelope(polygon.getMinX(), polygon.getMinY(), polygon.getMaxX(), polygon.getMaxY());
+
+            int chunkCount = (candidates.length + POLYGON_CHUNK_SIZE - 1) / POLYGON_CHUNK_SIZE;
+            List<PropertyAssessment> matches = IntStream.range(0, chunkCount)
+                    .parallel()
+                    .mapToObj(chunk -> cancelled.getAsBoolean() ? List.<PropertyAssessment>of() : polygonMatches(polygon, candidates, chunk))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+
+            span.setItems(matches.size());
+            Metrics.count("filter.candidates", candidates.length);
+            return matches;
+        }
+    }
+
+    private List<PropertyAssessment> polygonMatches(SelectionPolygon polygon, int[] candidates, int chunk) {
+        List<PropertyAssessment> matches = new ArrayList<>();
+        int end = Math.min(candidates.length, (chunk + 1) * POLYGON_CHUNK_SIZE);
+        for (int i = chunk * POLYGON_CHUNK_SIZE; i < end; i++) {
+            int row = candidates[i];
+            if (polygon.contains(columns.getLng(row), columns.getLat(row))) {
+                matches.add(properties.get(row));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,261 @@
+package com.mycompany.app;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Kernel density raster over the property locations, for the heatmap view. The raster covers every
+// located property in Web Mercator and is split into square tiles that are computed in parallel.
+// Each tile's density is cached, so when the shown rows change only the tiles within a kernel
+// radius of a changed row are computed again.
+public class DensitySurface {
+    public enum Weighting {COUNT, ASSESSED_VALUE}
+
+    public static final double CELL_SIZE = 40; // Meters per pixel
+    private static final int TILE_SIZE = 128; // Pixels
+    private static final int KERNEL_RADIUS = 10; // Pixels, at most TILE_SIZE so a point only reaches neighbouring tiles
+
+    // Instance variables:
+    private final PropertyColumns columns;
+    private final Weighting weighting;
+    private final double minX;
+    private final double maxY;
+    private final int width;
+    private final int height;
+    private final int tileColumns;
+    private final int tileRows;
+
+    // Rows grouped by the tile they fall in, in CSR layout: tile t holds rowsByTile[tileStart[t] .. tileStart[t + 1])
+    private final int[] tileStart;
+    private final int[] rowsByTile;
+
+    private final float[][] tileDensity;
+    private BitSet computedRows;
+
+    // Constructor:
+    public DensitySurface(PropertyColumns columns, Weighting weighting) {
+        this.columns = columns;
+        this.weighting = weighting;
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int row = 0; row < columns.size(); row++) {
+            if (columns.hasLocation(row)) {
+                minX = Math.min(minX, columns.getX(row));
+                minY = Math.min(minY, columns.getY(row));
+                maxX = Math.max(maxX, columns.getX(row));
+                maxY = Math.max(maxY, columns.getY(row));
+            }
+        }
+        if (minX > maxX) {
+            minX = minY = maxX = maxY = 0; // Nothing located
+        }
+
+        // Pad by the kernel radius so points on the edge keep their whole kernel
+        double padding = KERNEL_RADIUS * CELL_SIZE;
+        this.minX = minX - padding;
+        this.maxY = maxY + padding;
+        this.tileColumns = (int) Math.ceil((maxX - minX + 2 * padding) / CELL_SIZE / TILE_SIZE);
+        this.tileRows = (int) Math.ceil((maxY - minY + 2 * padding) / CELL_SIZE / TILE_SIZE);
+        this.width = tileColumns * TILE_SIZE;
+        this.height = tileRows * TILE_SIZE;
+
+        // Counting sort of the located rows by tile
+        int tileCount = tileColumns * tileRows;
+        tileStart = new int[tileCount + 1];
+        for (int row = 0; row < columns.size(); row++) {
+            if (columns.hasLocation(row)) {
+                tileStart[tileOf(row) + 1]++;
+            }
+        }
+        for (int tile = 0; tile < tileCount; tile++) {
+            tileStart[tile + 1] += tileStart[tile];
+        }
+        rowsByTile = new int[tileStart[tileCount]];
+        int[] next = Arrays.copyOf(tileStart, tileCount);
+        for (int row = 0; row < columns.size(); row++) {
+            if (columns.hasLocation(row)) {
+                rowsByTile[next[tileOf(row)]++] = row;
+            }
+        }
+
+        tileDensity = new float[tileCount][];
+    }
+
+    // Getters:
+    public Weighting getWeighting() {return weighting;}
+    public int getWidth() {return width;}
+    public int getHeight() {return height;}
+    // Extent of the raster in Web Mercator
+    public double getMinX() {return minX;}
+    public double getMaxX() {return minX + width * CELL_SIZE;}
+    public double getMinY() {return maxY - height * CELL_SIZE;}
+    public double getMaxY() {return maxY;}
+
+    // Methods:
+    // Brings the density up to date with the shown rows, recomputing only the tiles they affect.
+    // Returns how many tiles were computed, or -1 if cancelled, in which case the cache is unchanged.
+    public synchronized int update(BitSet shownRows, BooleanSupplier cancelled) {
+        BitSet dirtyTiles = new BitSet(tileDensity.length);
+        if (computedRows == null) {
+            dirtyTiles.set(0, tileDensity.length);
+        } else {
+            BitSet changedRows = (BitSet) computedRows.clone();
+            changedRows.xor(shownRows);
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                if (columns.hasLocation(row)) {
+                    markTilesInReach(row, dirtyTiles);
+                }
+            }
+        }
+
+        int[] tiles = dirtyTiles.stream().toArray();
+        float[][] computed = new float[tiles.length][];
+        IntStream.range(0, tiles.length).parallel().forEach(i -> {
+            if (!cancelled.getAsBoolean()) {
+                computed[i] = computeTile(tiles[i], shownRows);
+            }
+        });
+        if (cancelled.getAsBoolean()) {
+            return -1;
+        }
+
+        for (int i = 0; i < tiles.length; i++) {
+            tileDensity[tiles[i]] = computed[i];
+        }
+        computedRows = (BitSet) shownRows.clone();
+        return tiles.length;
+    }
+
+    // Sums the kernel of every shown row in this tile or its neighbours over the tile's pixels
+    private float[] computeTile(int tile, BitSet shownRows) {
+        float[] density = new float[TILE_SIZE * TILE_SIZE];
+        int tileX = tile % tileColumns;
+        int tileY = tile / tileColumns;
+        int originX = tileX * TILE_SIZE;
+        int originY = tileY * TILE_SIZE;
+
+        for (int neighbourY = Math.max(0, tileY - 1); neighbourY <= Math.min(tileRows - 1, tileY + 1); neighbourY++) {
+            for (int neighbourX = Math.max(0, tileX - 1); neighbourX <= Math.min(tileColumns - 1, tileX + 1); neighbourX++) {
+                int neighbour = neighbourY * tileColumns + neighbourX;
+
+                for (int i = tileStart[neighbour]; i < tileStart[neighbour + 1]; i++) {
+                    int row = rowsByTile[i];
+                    if (!shownRows.get(row)) {
+                        continue;
+                    }
+                    double weight = weighting == Weighting.COUNT ? 1 : Math.max(0, columns.getAssessedValue(row));
+                    addKernel(density, pixelX(row) - originX, pixelY(row) - originY, weight);
+                }
+            }
+        }
+        return density;
+    }
+
+    // Quartic (biweight) kernel centered on a point given in tile pixels
+    private static void addKernel(float[] density, double centerX, double centerY, double weight) {
+        int fromX = Math.max(0, (int) Math.floor(centerX - KERNEL_RADIUS));
+        int toX = Math.min(TILE_SIZE - 1, (int) Math.ceil(centerX + KERNEL_RADIUS));
+        int fromY = Math.max(0, (int) Math.floor(centerY - KERNEL_RADIUS));
+        int toY = Math.min(TILE_SIZE - 1, (int) Math.ceil(centerY + KERNEL_RADIUS));
+
+        for (int y = fromY; y <= toY; y++) {
+            double dy = (y + 0.5 - centerY) / KERNEL_RADIUS;
+            for (int x = fromX; x <= toX; x++) {
+                double dx = (x + 0.5 - centerX) / KERNEL_RADIUS;
+                double distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared < 1) {
+                    double falloff = 1 - distanceSquared;
+                    density[y * TILE_SIZE + x] += (float) (weight * falloff * falloff);
+                }
+            }
+        }
+    }
+
+    // ARGB pixels of the current density, row by row from the top, for an image covering the
+    // raster's extent. Density is scaled by its square root against the highest value so sparse
+    // areas still show.
+    public synchronized int[] renderArgb() {
+        float max = 0;
+        for (float[] density : tileDensity) {
+            if (density != null) {
+                for (float value : density) {
+                    max = Math.max(max, value);
+                }
+            }
+        }
+        double scale = max > 0 ? 1 / Math.sqrt(max) : 0;
+
+        int[] pixels = new int[width * height];
+        IntStream.range(0, tileDensity.length).parallel().forEach(tile -> {
+            float[] density = tileDensity[tile];
+            if (density == null) {
+                return;
+            }
+            int originX = (tile % tileColumns) * TILE_SIZE;
+            int originY = (tile / tileColumns) * TILE_SIZE;
+            for (int y = 0; y < TILE_SIZE; y++) {
+                for (int x = 0; x < TILE_SIZE; x++) {
+                    float value = density[y * TILE_SIZE + x];
+                    if (value > 0) {
+                        pixels[(originY + y) * width + originX + x] = heatColor(Math.sqrt(value) * scale);
+                    }
+                }
+            }
+        });
+        return pixels;
+    }
+
+    // Transparent blue through green and yellow to opaque red, for t in [0, 1]
+    private static int heatColor(double t) {
+        t = Math.min(1, Math.max(0, t));
+        int alpha = (int) (80 + 175 * t);
+        int red, green, blue;
+        if (t < 0.33) {
+            double s = t / 0.33;
+            red = 0;
+            green = (int) (255 * s);
+            blue = (int) (255 * (1 - s));
+        } else if (t < 0.66) {
+            double s = (t - 0.33) / 0.33;
+            red = (int) (255 * s);
+            green = 255;
+            blue = 0;
+        } else {
+            double s = (t - 0.66) / 0.34;
+            red = 255;
+            green = (int) (255 * (1 - s));
+            blue = 0;
+        }
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    // Marks every tile that a row's kernel reaches
+    private void markTilesInReach(int row, BitSet tiles) {
+        int fromX = Math.max(0, (int) ((pixelX(row) - KERNEL_RADIUS) / TILE_SIZE));
+        int toX = Math.min(tileColumns - 1, (int) ((pixelX(row) + KERNEL_RADIUS) / TILE_SIZE));
+        int fromY = Math.max(0, (int) ((pixelY(row) - KERNEL_RADIUS) / TILE_SIZE));
+        int toY = Math.min(tileRows - 1, (int) ((pixelY(row) + KERNEL_RADIUS) / TILE_SIZE));
+
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                tiles.set(y * tileColumns + x);
+            }
+        }
+    }
+
+    private int tileOf(int row) {
+        int tileX = Math.min(tileColumns - 1, (int) (pixelX(row) / TILE_SIZE));
+        int tileY = Math.min(tileRows - 1, (int) (pixelY(row) / TILE_SIZE));
+        return tileY * tileColumns + tileX;
+    }
+
+    // Position in raster pixels, measured from the top left corner
+    private double pixelX(int row) {
+        return (columns.getX(row) - minX) / CELL_SIZE;
+    }
+
+    private double pixelY(int row) {
+        return (maxY - columns.getY(row)) / CELL_SIZE;
+    }
+}
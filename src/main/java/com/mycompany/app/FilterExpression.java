@@ -0,0 +1,590 @@
+package com.mycompany.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// A filter over property assessments, built from categorical, range, spatial and text predicates
+// combined with AND, OR and NOT. PropertyAssessments.filter() plans an expression against the
+// column statistics before running it: cheap, selective predicates are tested first and the most
+// selective indexed predicate picks the candidate rows, so most filters never scan every row.
+public abstract class FilterExpression {
+    // Used when a predicate has no statistics to estimate from
+    private static final double UNKNOWN_SELECTIVITY = 0.5;
+
+    // Columns that can be filtered on
+    public enum Field {
+        NEIGHBORHOOD(true),
+        WARD(true),
+        ASSESSMENT_CLASS(true),
+        GARAGE(true),
+        ADDRESS(false);
+
+        private final boolean categorical;
+
+        Field(boolean categorical) {
+            this.categorical = categorical;
+        }
+
+        public boolean isCategorical() {return categorical;}
+
+        // Garage flags are stored as "Y"/"y"/"N"; everything else compares as written
+        public String normalize(String value) {
+            if (value == null) return "";
+            return this == GARAGE ? value.toUpperCase(Locale.ROOT) : value;
+        }
+
+        public void collectValues(PropertyAssessment property, Collection<String> values) {
+            switch (this) {
+                case NEIGHBORHOOD -> values.add(normalize(property.getNeighborhood().getNeighborhoodName()));
+                case WARD -> values.add(normalize(property.getNeighborhood().getWard()));
+                case ASSESSMENT_CLASS -> {
+                    AssessmentClass assessmentClass = property.getAssessmentClass();
+                    for (String value : Arrays.asList(assessmentClass.getAssessmentClass1(), assessmentClass.getAssessmentClass2(), assessmentClass.getAssessmentClass3())) {
+                        if (value != null && !value.isEmpty()) {
+                            values.add(value);
+                        }
+                    }
+                }
+                case GARAGE -> values.add(normalize(property.getGarage()));
+                case ADDRESS -> values.add(property.getAddress().toString());
+            }
+        }
+
+        public boolean matches(PropertyAssessment property, String value) {
+            return switch (this) {
+                case NEIGHBORHOOD -> value.equals(property.getNeighborhood().getNeighborhoodName());
+                case WARD -> value.equals(property.getNeighborhood().getWard());
+                case ASSESSMENT_CLASS -> value.equals(property.getAssessmentClass().getAssessmentClass1())
+                        || value.equals(property.getAssessmentClass().getAssessmentClass2())
+                        || value.equals(property.getAssessmentClass().getAssessmentClass3());
+                case GARAGE -> value.equalsIgnoreCase(property.getGarage());
+                case ADDRESS -> value.equals(property.getAddress().toString());
+            };
+        }
+    }
+
+    // Methods:
+    public abstract boolean test(PropertyAssessment property);
+
+    // Estimated fraction of rows (0..1) this expression keeps
+    public abstract double estimateSelectivity(ColumnStatistics statistics);
+
+    // Relative cost of test() per row, used to break ties between equally selective predicates
+    protected double cost() {
+        return 1;
+    }
+
+    // Returns an equivalent expression with children ordered for the cheapest evaluation
+    public FilterExpression plan(ColumnStatistics statistics) {
+        return this;
+    }
+
+    // Rows that can possibly match, in ascending row order, or null if this expression has no
+    // index and every row has to be tested
+    public int[] candidateRows(ColumnStatistics statistics) {
+        return null;
+    }
+
+    // Plans each child and orders them by selectivity, estimating each one only once
+    private static List<FilterExpression> planChildren(List<FilterExpression> children, ColumnStatistics statistics, boolean mostSelectiveFirst) {
+        List<FilterExpression> planned = new ArrayList<>();
+        Map<FilterExpression, Double> selectivities = new IdentityHashMap<>();
+        for (FilterExpression child : children) {
+            FilterExpression plannedChild = child.plan(statistics);
+            planned.add(plannedChild);
+            selectivities.put(plannedChild, plannedChild.estimateSelectivity(statistics));
+        }
+
+        Comparator<FilterExpression> bySelectivity = Comparator.comparingDouble(selectivities::get);
+        planned.sort((mostSelectiveFirst ? bySelectivity : bySelectivity.reversed())
+                .thenComparingDouble(FilterExpression::cost));
+        return planned;
+    }
+
+    // Factories:
+    public static FilterExpression all() {return new And(List.of());}
+    public static FilterExpression and(FilterExpression... expressions) {return new And(Arrays.asList(expressions));}
+    public static FilterExpression and(List<FilterExpression> expressions) {return new And(expressions);}
+    public static FilterExpression or(FilterExpression... expressions) {return new Or(Arrays.asList(expressions));}
+    public static FilterExpression or(List<FilterExpression> expressions) {return new Or(expressions);}
+    public static FilterExpression not(FilterExpression expression) {return new Not(expression);}
+    public static FilterExpression equalTo(Field field, String value) {return new Categorical(field, value);}
+    public static FilterExpression valueBetween(long minValue, long maxValue) {return new ValueRange(minValue, maxValue);}
+    public static FilterExpression valueEqualTo(long value) {return new ValueRange(value, value);}
+
+    // Nothing is below Long.MIN_VALUE or above Long.MAX_VALUE, and value -/+ 1 would wrap around
+    public static FilterExpression valueBelow(long value) {
+        return value == Long.MIN_VALUE ? new ValueRange(Long.MAX_VALUE, Long.MIN_VALUE) : new ValueRange(Long.MIN_VALUE, value - 1);
+    }
+
+    public static FilterExpression valueAbove(long value) {
+        return value == Long.MAX_VALUE ? new ValueRange(Long.MAX_VALUE, Long.MIN_VALUE) : new ValueRange(value + 1, Long.MAX_VALUE);
+    }
+    public static FilterExpression within(SelectionPolygon polygon) {return new Within(polygon);}
+    public static FilterExpression textContains(Field field, String text) {return new TextContains(field, text);}
+
+    // Parses a filter spec such as: ward = "Ward 7" and (value > 500000 or not garage = Y)
+    //   Fields: neighborhood, ward, class, garage, address, value
+    //   Operators: = and ~ (contains) on text fields; =, <, <=, >, >= on value
+    //   Combined with and, or, not and parentheses; "all" (or an empty spec) keeps every property.
+    // Values with spaces or parentheses are double-quoted. Throws IllegalArgumentException on bad input.
+    public static FilterExpression parse(String spec) {
+        return new Parser(spec).parse();
+    }
+
+    // Node types:
+    public static class And extends FilterExpression {
+        private final List<FilterExpression> children;
+
+        And(List<FilterExpression> children) {
+            this.children = List.copyOf(children);
+        }
+
+        public List<FilterExpression> getChildren() {return children;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            for (FilterExpression child : children) {
+                if (!child.test(property)) return false; // Short-circuit on the first failing child
+            }
+            return true;
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            double selectivity = 1;
+            for (FilterExpression child : children) {
+                selectivity *= child.estimateSelectivity(statistics);
+            }
+            return selectivity;
+        }
+
+        @Override
+        protected double cost() {
+            return children.stream().mapToDouble(FilterExpression::cost).sum();
+        }
+
+        @Override
+        public FilterExpression plan(ColumnStatistics statistics) {
+            // The child most likely to reject a row goes first
+            return new And(planChildren(children, statistics, true));
+        }
+
+        @Override
+        public int[] candidateRows(ColumnStatistics statistics) {
+            // Children are planned most selective first, so the first indexed one is the best driver
+            for (FilterExpression child : children) {
+                int[] rows = child.candidateRows(statistics);
+                if (rows != null) return rows;
+            }
+            return null;
+        }
+    }
+
+    public static class Or extends FilterExpression {
+        private final List<FilterExpression> children;
+
+        Or(List<FilterExpression> children) {
+            this.children = List.copyOf(children);
+        }
+
+        public List<FilterExpression> getChildren() {return children;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            for (FilterExpression child : children) {
+                if (child.test(property)) return true; // Short-circuit on the first matching child
+            }
+            return false;
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            // Assumes the children are independent
+            double rejected = 1;
+            for (FilterExpression child : children) {
+                rejected *= 1 - child.estimateSelectivity(statistics);
+            }
+            return 1 - rejected;
+        }
+
+        @Override
+        protected double cost() {
+            return children.stream().mapToDouble(FilterExpression::cost).sum();
+        }
+
+        @Override
+        public FilterExpression plan(ColumnStatistics statistics) {
+            // The child most likely to accept a row goes first
+            return new Or(planChildren(children, statistics, false));
+        }
+
+        @Override
+        public int[] candidateRows(ColumnStatistics statistics) {
+            // Only usable when every branch is indexed; otherwise any row could match
+            if (children.isEmpty()) return new int[0];
+
+            int[] union = new int[0];
+            for (FilterExpression child : children) {
+                int[] rows = child.candidateRows(statistics);
+                if (rows == null) return null;
+                union = unionSorted(union, rows);
+            }
+            return union;
+        }
+
+        private static int[] unionSorted(int[] first, int[] second) {
+            int[] merged = new int[first.length + second.length];
+            int i = 0, j = 0, size = 0;
+            while (i < first.length || j < second.length) {
+                int next;
+                if (j >= second.length || (i < first.length && first[i] < second[j])) next = first[i++];
+                else if (i >= first.length || second[j] < first[i]) next = second[j++];
+                else { next = first[i++]; j++; }
+                merged[size++] = next;
+            }
+            return Arrays.copyOf(merged, size);
+        }
+    }
+
+    public static class Not extends FilterExpression {
+        private final FilterExpression child;
+
+        Not(FilterExpression child) {
+            this.child = child;
+        }
+
+        public FilterExpression getChild() {return child;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            return !child.test(property);
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            return 1 - child.estimateSelectivity(statistics);
+        }
+
+        @Override
+        protected double cost() {
+            return child.cost();
+        }
+
+        @Override
+        public FilterExpression plan(ColumnStatistics statistics) {
+            return new Not(child.plan(statistics));
+        }
+    }
+
+    public static class Categorical extends FilterExpression {
+        private final Field field;
+        private final String value;
+
+        Categorical(Field field, String value) {
+            if (!field.isCategorical()) {
+                throw new IllegalArgumentException(field + " is not a categorical field.");
+            }
+            this.field = field;
+            this.value = value;
+        }
+
+        public Field getField() {return field;}
+        public String getValue() {return value;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            return field.matches(property, value);
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            if (statistics.getNumberOfRecords() == 0) return 0;
+            return (double) statistics.getCount(field, value) / statistics.getNumberOfRecords();
+        }
+
+        @Override
+        public int[] candidateRows(ColumnStatistics statistics) {
+            return statistics.getRows(field, value);
+        }
+    }
+
+    // Assessed value between minValue and maxValue, both inclusive
+    public static class ValueRange extends FilterExpression {
+        private final long minValue;
+        private final long maxValue;
+
+        ValueRange(long minValue, long maxValue) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        public long getMinValue() {return minValue;}
+        public long getMaxValue() {return maxValue;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            long value = property.getAssessedValue();
+            return value >= minValue && value <= maxValue;
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            if (statistics.getNumberOfRecords() == 0) return 0;
+            return (double) statistics.countValuesBetween(minValue, maxValue) / statistics.getNumberOfRecords();
+        }
+
+        @Override
+        public int[] candidateRows(ColumnStatistics statistics) {
+            return statistics.getRowsWithValueBetween(minValue, maxValue);
+        }
+    }
+
+    public static class Within extends FilterExpression {
+        private final SelectionPolygon polygon;
+
+        Within(SelectionPolygon polygon) {
+            this.polygon = polygon;
+        }
+
+        public SelectionPolygon getPolygon() {return polygon;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            return polygon.contains(property.getLocation().getLng(), property.getLocation().getLat());
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            // The points in the grid cells under the bounding box are an upper bound on the rows
+            // inside the polygon, and counting them needs no query
+            if (statistics.getNumberOfRecords() == 0) return 0;
+            int count = statistics.getSpatialIndex().countInEnvelopeCells(polygon.getMinX(), polygon.getMinY(), polygon.getMaxX(), polygon.getMaxY());
+            return (double) count / statistics.getNumberOfRecords();
+        }
+
+        @Override
+        protected double cost() {
+            return 4; // Ray casting over every ring edge
+        }
+
+        @Override
+        public int[] candidateRows(ColumnStatistics statistics) {
+            return statistics.getSpatialIndex().queryEnvelope(polygon.getMinX(), polygon.getMinY(), polygon.getMaxX(), polygon.getMaxY());
+        }
+    }
+
+    // Case-insensitive substring match, e.g. a street name within the address
+    public static class TextContains extends FilterExpression {
+        private final Field field;
+        private final String text;
+
+        TextContains(Field field, String text) {
+            this.field = field;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        public Field getField() {return field;}
+        public String getText() {return text;}
+
+        @Override
+        public boolean test(PropertyAssessment property) {
+            List<String> values = new ArrayList<>(3);
+            field.collectValues(property, values);
+            for (String value : values) {
+                if (value.toLowerCase(Locale.ROOT).contains(text)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public double estimateSelectivity(ColumnStatistics statistics) {
+            if (!field.isCategorical()) return UNKNOWN_SELECTIVITY;
+
+            // Distinct values are few, so count the rows behind each matching one
+            long matches = 0;
+            for (String value : statistics.getDistinctValues(field)) {
+                if (value.toLowerCase(Locale.ROOT).contains(text)) {
+                    matches += statistics.getCount(field, value);
+                }
+            }
+            return statistics.getNumberOfRecords() == 0 ? 0 : Math.min(1, (double) matches / statistics.getNumberOfRecords());
+        }
+
+        @Override
+        protected double cost() {
+            return 3; // Lower-casing and substring search per row
+        }
+    }
+
+    // Recursive descent over the spec: or binds loosest, then and, then not
+    private static class Parser {
+        private final String spec;
+        private int position;
+
+        Parser(String spec) {
+            this.spec = spec;
+        }
+
+        FilterExpression parse() {
+            if (spec.isBlank() || spec.trim().equalsIgnoreCase("all")) {
+                return all();
+            }
+            FilterExpression expression = parseOr();
+            skipWhitespace();
+            if (position < spec.length()) {
+                throw error("Unexpected '" + spec.charAt(position) + "'");
+            }
+            return expression;
+        }
+
+        private FilterExpression parseOr() {
+            List<FilterExpression> terms = new ArrayList<>(List.of(parseAnd()));
+            while (acceptKeyword("or")) {
+                terms.add(parseAnd());
+            }
+            return terms.size() == 1 ? terms.get(0) : or(terms);
+        }
+
+        private FilterExpression parseAnd() {
+            List<FilterExpression> factors = new ArrayList<>(List.of(parseNot()));
+            while (acceptKeyword("and")) {
+                factors.add(parseNot());
+            }
+            return factors.size() == 1 ? factors.get(0) : and(factors);
+        }
+
+        private FilterExpression parseNot() {
+            if (acceptKeyword("not")) {
+                return not(parseNot());
+            }
+            if (accept("(")) {
+                FilterExpression expression = parseOr();
+                if (!accept(")")) {
+                    throw error("Expected ')'");
+                }
+                return expression;
+            }
+            return parsePredicate();
+        }
+
+        private FilterExpression parsePredicate() {
+            String field = readWord().toLowerCase(Locale.ROOT);
+            String operator = readOperator();
+            String value = readValue();
+
+            if (field.equals("value")) {
+                long number;
+                try {
+                    number = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw error("Expected a whole number for value, got '" + value + "'");
+                }
+                return switch (operator) {
+                    case "=" -> valueEqualTo(number);
+                    case "<" -> valueBelow(number);
+                    case "<=" -> valueBetween(Long.MIN_VALUE, number);
+                    case ">" -> valueAbove(number);
+                    case ">=" -> valueBetween(number, Long.MAX_VALUE);
+                    default -> throw error("Operator " + operator + " can't be used on value");
+                };
+            }
+
+            Field textField = switch (field) {
+                case "neighborhood" -> Field.NEIGHBORHOOD;
+                case "ward" -> Field.WARD;
+                case "class" -> Field.ASSESSMENT_CLASS;
+                case "garage" -> Field.GARAGE;
+                case "address" -> Field.ADDRESS;
+                default -> throw error("Unknown field '" + field + "'");
+            };
+            return switch (operator) {
+                case "=" -> equalTo(textField, value);
+                case "~" -> textContains(textField, value);
+                default -> throw error("Operator " + operator + " can't be used on " + field);
+            };
+        }
+
+        private String readWord() {
+            skipWhitespace();
+            int start = position;
+            while (position < spec.length() && Character.isLetter(spec.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a field name");
+            }
+            return spec.substring(start, position);
+        }
+
+        private String readOperator() {
+            skipWhitespace();
+            for (String operator : new String[]{"<=", ">=", "=", "<", ">", "~"}) {
+                if (spec.startsWith(operator, position)) {
+                    position += operator.length();
+                    return operator;
+                }
+            }
+            throw error("Expected an operator");
+        }
+
+        private String readValue() {
+            skipWhitespace();
+            if (accept("\"")) {
+                int end = spec.indexOf('"', position);
+                if (end < 0) {
+                    throw error("Unterminated quote");
+                }
+                String value = spec.substring(position, end);
+                position = end + 1;
+                return value;
+            }
+
+            int start = position;
+            while (position < spec.length() && !Character.isWhitespace(spec.charAt(position)) && spec.charAt(position) != ')') {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a value");
+            }
+            return spec.substring(start, position);
+        }
+
+        // Keywords must stand alone, so a neighborhood like "ORCHARDS" isn't read as "or"
+        private boolean acceptKeyword(String keyword) {
+            skipWhitespace();
+            int end = position + keyword.length();
+            if (spec.regionMatches(true, position, keyword, 0, keyword.length())
+                    && (end == spec.length() || !Character.isLetterOrDigit(spec.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean accept(String token) {
+            skipWhitespace();
+            if (spec.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < spec.length() && Character.isWhitespace(spec.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in filter: " + spec);
+        }
+    }
+}
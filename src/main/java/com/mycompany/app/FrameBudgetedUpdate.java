@@ -0,0 +1,59 @@
+package com.mycompany.app;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.function.BiConsumer;
+
+// Spreads a large update of the scene over several frames instead of blocking the FX thread with it.
+// Each frame applies the next [from, to) range of items, and the range grows or shrinks so the time
+// spent per frame stays within the budget, whatever a single item costs on this machine.
+public class FrameBudgetedUpdate extends AnimationTimer {
+    private static final int INITIAL_CHUNK_SIZE = 1000;
+    private static final int MIN_CHUNK_SIZE = 100;
+
+    // Instance variables:
+    private final int total;
+    private final long frameBudgetNanos;
+    private final BiConsumer<Integer, Integer> applyRange;
+    private final Runnable onFinished;
+    private int next;
+    private int chunkSize = INITIAL_CHUNK_SIZE;
+
+    // Constructor:
+    public FrameBudgetedUpdate(int total, long frameBudgetMillis, BiConsumer<Integer, Integer> applyRange, Runnable onFinished) {
+        this.total = total;
+        this.frameBudgetNanos = frameBudgetMillis * 1_000_000;
+        this.applyRange = applyRange;
+        this.onFinished = onFinished;
+    }
+
+    // Getters:
+    public boolean isFinished() {return next >= total;}
+    public double getProgress() {return total == 0 ? 1 : (double) next / total;}
+
+    // Methods:
+    @Override
+    public void handle(long now) {
+        if (isFinished()) {
+            stop();
+            onFinished.run();
+            return;
+        }
+
+        long start = System.nanoTime();
+        int end = (int) Math.min(total, (long) next + chunkSize);
+        applyRange.accept(next, end);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        // Size the next chunk from this one's cost per item, at most doubling per frame so one
+        // cheap frame can't blow the budget on the next
+        double nanosPerItem = (double) elapsed / (end - next);
+        chunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(chunkSize * 2L, frameBudgetNanos / nanosPerItem));
+        next = end;
+
+        if (isFinished()) {
+            stop();
+            onFinished.run();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.mycompany.app;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Watchdog for the JavaFX application thread. A heartbeat is posted to the FX thread with runLater
+// and the time it takes to run is its latency: anything the FX thread is busy with (a handler
+// sorting the dataset, a huge addAll, a layout pass) delays it. Once a heartbeat has waited longer
+// than the threshold, the FX thread's stack is captured, and when it finally runs the stall is
+// added to the totals for the app code it was stuck in.
+//
+// Between stalls the cost is one runLater per heartbeat, so it can stay on all the time.
+public class FxStallDetector {
+    private static final int SITE_FRAMES = 3; // App frames kept in a stall site, innermost first
+
+    // Instance variables:
+    private final Thread fxThread;
+    private final ScheduledExecutorService timer;
+    private final long heartbeatMillis;
+    private final long thresholdNanos;
+    private final Metrics.LatencyHistogram latency = new Metrics.LatencyHistogram();
+    private final Map<String, StallSite> sites = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> watchdog;
+
+    // Start of the heartbeat the FX thread hasn't run yet, or 0, and the stack seen while waiting on it
+    private final AtomicLong pendingSince = new AtomicLong();
+    private StackTraceElement[] stallStack;
+
+    // Constructor:
+    // fxThread is the JavaFX application thread; the watchdog runs on the given timer
+    public FxStallDetector(Thread fxThread, ScheduledExecutorService timer, long heartbeatMillis, long thresholdMillis) {
+        this.fxThread = fxThread;
+        this.timer = timer;
+        this.heartbeatMillis = heartbeatMillis;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    // Getters:
+    public Metrics.LatencyHistogram getLatency() {return latency;}
+
+    // Methods:
+    public void start() {
+        watchdog = timer.scheduleWithFixedDelay(this::check, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (watchdog != null) {
+            watchdog.cancel(false);
+        }
+    }
+
+    // Stall sites, worst (most total stalled time) first
+    public List<StallSite> getSites() {
+        List<StallSite> sorted = new ArrayList<>(sites.values());
+        sorted.sort(Comparator.comparingLong(StallSite::getTotalNanos).reversed());
+        return sorted;
+    }
+
+    // Posts a heartbeat if none is waiting, otherwise samples the FX thread once the wait is a stall
+    private void check() {
+        long now = System.nanoTime();
+        long since = pendingSince.get();
+        if (since == 0) {
+            synchronized (this) {
+                stallStack = null;
+            }
+            pendingSince.set(now);
+            Platform.runLater(() -> heartbeat(now));
+            return;
+        }
+
+        if (now - since > thresholdNanos) {
+            synchronized (this) {
+                if (stallStack == null && pendingSince.get() == since) {
+                    stallStack = fxThread.getStackTrace();
+                }
+            }
+        }
+    }
+
+    // Runs on the FX thread
+    private void heartbeat(long postedAt) {
+        long latencyNanos = System.nanoTime() - postedAt;
+        latency.record(latencyNanos);
+
+        if (latencyNanos > thresholdNanos) {
+            StackTraceElement[] stack;
+            synchronized (this) {
+                stack = stallStack;
+                stallStack = null;
+            }
+            // Stalls that ended before the watchdog looked have no stack
+            String site = stack == null ? "(ended before sampled)" : siteOf(stack);
+            sites.computeIfAbsent(site, StallSite::new).record(latencyNanos);
+            Metrics.count("fx.stalls", 1);
+            System.out.printf("FX thread stalled for %d ms in %s%n", TimeUnit.NANOSECONDS.toMillis(latencyNanos), site);
+        }
+        pendingSince.set(0);
+    }
+
+    // The innermost frames of the app's own code, which is where a fix would go; falls back to the
+    // top of the stack when the FX thread is busy in library code only
+    private static String siteOf(StackTraceElement[] stack) {
+        List<String> frames = new ArrayList<>();
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("com.mycompany.app.") && frames.size() < SITE_FRAMES) {
+                frames.add(frameName(frame));
+            }
+        }
+        if (frames.isEmpty()) {
+            return stack.length == 0 ? "(no stack)" : frameName(stack[0]);
+        }
+        return String.join(" < ", frames);
+    }
+
+    private static String frameName(StackTraceElement frame) {
+        String className = frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1);
+        return className + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    // Heartbeat latency percentiles and the stall sites, for the diagnostics panel and the log
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format("FX heartbeat p50 %.1f ms, p99 %.1f ms, max %.1f ms over %d beats%n",
+                latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6, latency.getMax() / 1e6, latency.getCount()));
+        for (StallSite site : getSites()) {
+            summary.append(String.format("%5d stalls %8.0f ms total %7.0f ms max  %s%n",
+                    site.getCount(), site.getTotalNanos() / 1e6, site.getMaxNanos() / 1e6, site.getSite()));
+        }
+        return summary.toString();
+    }
+
+    public static class StallSite {
+        // Instance variables:
+        private final String site;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        // Constructor:
+        public StallSite(String site) {
+            this.site = site;
+        }
+
+        // Getters:
+        public String getSite() {return site;}
+        public long getCount() {return count.get();}
+        public long getTotalNanos() {return totalNanos.get();}
+        public long getMaxNanos() {return maxNanos.get();}
+
+        // Methods:
+        public void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
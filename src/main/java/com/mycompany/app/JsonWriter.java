@@ -0,0 +1,117 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Minimal streaming JSON writer: values are written as they come, so large reports never have to
+// be built up in memory first. Commas between members and elements are inserted automatically.
+public class JsonWriter {
+    // Instance variables:
+    private final Writer out;
+    private boolean needsComma;
+
+    // Constructor:
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    // Methods:
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        out.write('}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        out.write(']');
+        needsComma = true;
+        return this;
+    }
+
+    // Member name inside an object; the value written next belongs to it
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeString(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        needsComma = true;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void separate() throws IOException {
+        if (needsComma) {
+            out.write(',');
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+}
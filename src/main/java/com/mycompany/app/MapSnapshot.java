@@ -0,0 +1,29 @@
+package com.mycompany.app;
+
+import java.util.BitSet;
+
+// What the map shows for one set of properties: the shown rows, the value the colors and legend are
+// centered on, the clusters built for those rows and the statistics text shown beside them. Taken
+// when the unfiltered map is first shown, so Remove Filters can put it back straight away instead of
+// recomputing any of it.
+public class MapSnapshot {
+    // Instance variables:
+    private final BitSet rows;
+    private final long center;
+    private final ClusterIndex clusterIndex;
+    private final String statisticsText;
+
+    // Constructor:
+    public MapSnapshot(BitSet rows, long center, ClusterIndex clusterIndex, String statisticsText) {
+        this.rows = (BitSet) rows.clone();
+        this.center = center;
+        this.clusterIndex = clusterIndex;
+        this.statisticsText = statisticsText;
+    }
+
+    // Getters:
+    public BitSet getRows() {return (BitSet) rows.clone();}
+    public long getCenter() {return center;}
+    public ClusterIndex getClusterIndex() {return clusterIndex;}
+    public String getStatisticsText() {return statisticsText;}
+}
@@ -0,0 +1,207 @@
+package com.mycompany.app;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Timers per phase and named counters for the whole app. Each timed phase also becomes a PhaseEvent
+// in a Flight Recorder recording when one is running. Timings go into fixed log-scale histograms,
+// so recording costs a few atomic adds and p50/p99 are available at any time without keeping samples.
+//
+//     try (Metrics.Span span = Metrics.start(Metrics.Phase.FILTER)) {
+//         ...
+//         span.setItems(matches.size());
+//     }
+public class Metrics {
+    public enum Phase {
+        LOAD("Load"),
+        FILTER("Filter"),
+        STATISTICS("Statistics"),
+        GRAPHIC_PREPARATION("Graphic preparation"),
+        OVERLAY_UPDATE("Overlay update"),
+        EXPORT("Export"),
+        HIGHLIGHT("Highlight"),
+        CLICK("Click"),
+        TILE_RENDERING("Tile rendering");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {return label;}
+    }
+
+    private static final Map<Phase, LatencyHistogram> timers = new EnumMap<>(Phase.class);
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<String>> sections = new ConcurrentHashMap<>();
+
+    static {
+        for (Phase phase : Phase.values()) {
+            timers.put(phase, new LatencyHistogram());
+        }
+    }
+
+    // Constructor:
+    private Metrics() {
+    }
+
+    // Methods:
+    public static Span start(Phase phase) {
+        return new Span(phase);
+    }
+
+    public static void count(String counter, long amount) {
+        counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+    }
+
+    public static LatencyHistogram getTimer(Phase phase) {
+        return timers.get(phase);
+    }
+
+    // Other components' own statistics (thread pools, the FX thread), read each time the summary is
+    // built so they appear in the same table. A later section with the same name replaces the earlier one.
+    public static void addSection(String name, Supplier<String> section) {
+        sections.put(name, section);
+    }
+
+    public static long getCount(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // One line per phase that has run, then the counters, for the diagnostics panel and the log
+    public static String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%-20s %7s %9s %9s %9s %10s%n", "Phase", "Count", "p50 ms", "p99 ms", "Max ms", "Total ms"));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram timer = timers.get(phase);
+            if (timer.getCount() > 0) {
+                summary.append(String.format("%-20s %7d %9.2f %9.2f %9.2f %10.1f%n", phase.getLabel(), timer.getCount(),
+                        timer.percentile(0.50) / 1e6, timer.percentile(0.99) / 1e6, timer.getMax() / 1e6, timer.getTotal() / 1e6));
+            }
+        }
+        new TreeMap<>(counters).forEach((counter, adder) -> summary.append(String.format("%-28s %12d%n", counter, adder.sum())));
+        new TreeMap<>(sections).forEach((name, section) -> summary.append(String.format("%n%s%n%s", name, section.get())));
+        return summary.toString();
+    }
+
+    public static void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.clear();
+    }
+
+    // A phase being timed; closing it records the time and commits the Flight Recorder event
+    public static class Span implements AutoCloseable {
+        // Instance variables:
+        private final Phase phase;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long startNanos;
+        private long items;
+
+        // Constructor:
+        private Span(Phase phase) {
+            this.phase = phase;
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        // Methods:
+        public void setItems(long items) {
+            this.items = items;
+        }
+
+        @Override
+        public void close() {
+            timers.get(phase).record(System.nanoTime() - startNanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.getLabel();
+                event.items = items;
+                event.commit();
+            }
+        }
+    }
+
+    // Counts of durations in buckets eight to each power of two, so any percentile is within about
+    // 12% of the true value. Safe to record into from any thread.
+    public static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        // Instance variables:
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        // Getters:
+        public long getCount() {return count.sum();}
+        public long getTotal() {return total.sum();}
+        public long getMax() {return max.get();}
+
+        // Methods:
+        public void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        // Upper bound of the bucket holding the given fraction of recorded durations, in nanoseconds
+        public long percentile(double fraction) {
+            long recorded = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                recorded += buckets.get(i);
+            }
+            if (recorded == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(fraction * recorded);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(max.get(), upperBoundOf(i));
+                }
+            }
+            return max.get();
+        }
+
+        public void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            max.set(0);
+        }
+
+        // Exact below SUB_BUCKETS; above, the highest bit picks the power of two and the next three
+        // bits the sub-bucket within it
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+            return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mycompany.app;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Wraps a thread pool and records how long tasks wait in its queue and how long they run, so the
+// pool's load can be watched while the app is in use
+public class MonitoredExecutor implements Executor {
+    // Instance variables:
+    private final String name;
+    private final ExecutorService executor;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    // Constructor:
+    public MonitoredExecutor(String name, ExecutorService executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    // Getters:
+    public String getName() {return name;}
+    public long getSubmittedCount() {return submitted.sum();}
+    public long getCompletedCount() {return completed.sum();}
+    // Submitted but not started yet
+    public long getQueueDepth() {return submitted.sum() - started.sum();}
+    public long getActiveCount() {return started.sum() - completed.sum();}
+    public double getAverageQueueMillis() {return average(queueNanos, started);}
+    public double getAverageRunMillis() {return average(runNanos, completed);}
+    public double getMaxQueueMillis() {return maxQueueNanos.get() / 1e6;}
+
+    // Methods:
+    @Override
+    public void execute(Runnable task) {
+        long submittedAt = System.nanoTime();
+        submitted.increment();
+
+        executor.execute(() -> {
+            long startedAt = System.nanoTime();
+            started.increment();
+            queueNanos.add(startedAt - submittedAt);
+            maxQueueNanos.accumulateAndGet(startedAt - submittedAt, Math::max);
+            try {
+                task.run();
+            } finally {
+                runNanos.add(System.nanoTime() - startedAt);
+                completed.increment();
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static double average(LongAdder totalNanos, LongAdder count) {
+        long tasks = count.sum();
+        return tasks == 0 ? 0 : totalNanos.sum() / 1e6 / tasks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d queued, %d running, %d done, wait avg %.2f ms (max %.2f ms), run avg %.2f ms",
+                name, getQueueDepth(), getActiveCount(), getCompletedCount(),
+                getAverageQueueMillis(), getMaxQueueMillis(), getAverageRunMillis());
+    }
+}
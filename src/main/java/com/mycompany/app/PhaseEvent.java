@@ -0,0 +1,22 @@
+package com.mycompany.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder event for one timed phase (see Metrics), so a recording shows where the time went
+// next to the JVM's own GC, lock and thread events
+@Name("com.mycompany.app.Phase")
+@Label("Phase")
+@Category("Property Viewer")
+@Description("Loading, filtering, statistics, graphic preparation or an overlay update")
+public class PhaseEvent extends Event {
+    @Label("Phase")
+    public String phase;
+
+    @Label("Items")
+    @Description("Rows, matches or graphics handled, depending on the phase")
+    public long items;
+}
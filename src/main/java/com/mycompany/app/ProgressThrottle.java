@@ -0,0 +1,29 @@
+package com.mycompany.app;
+
+import java.util.function.BiConsumer;
+
+// Passes progress on at most once per interval, plus the final update. Lets a loop report after
+// every item without flooding the FX thread with a property change event for each one.
+public class ProgressThrottle implements BiConsumer<Integer, Integer> {
+    // Instance variables:
+    private final BiConsumer<Integer, Integer> progress;
+    private final long intervalNanos;
+    private long lastReport;
+
+    // Constructor:
+    public ProgressThrottle(BiConsumer<Integer, Integer> progress, long intervalMillis) {
+        this.progress = progress;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.lastReport = System.nanoTime() - intervalNanos;
+    }
+
+    // Methods:
+    @Override
+    public void accept(Integer done, Integer total) {
+        long now = System.nanoTime();
+        if (done.equals(total) || now - lastReport >= intervalNanos) {
+            lastReport = now;
+            progress.accept(done, total);
+        }
+    }
+}
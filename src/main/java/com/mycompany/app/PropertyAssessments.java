@@ -2,49 +2,77 @@ package com.mycompany.app;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.BitSet;
+import java.util.function.BooleanSupplier;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+// The property data, published as immutable versioned snapshots (see DatasetSnapshot). Each method
+// below works on the snapshot that is current when it is called, so one call never mixes versions;
+// code making several calls that must agree should take getSnapshot() once and use that. reload()
+// builds the next version off to the side and swaps it in atomically.
 public class PropertyAssessments {
     // Instance variables, these will be accessible with each instance of the class:
     private final String fileName;
-    private List<PropertyAssessment> properties = new ArrayList<>();
-    private Map<Integer, PropertyAssessment> propertyMap;
+    private final AtomicReference<DatasetSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
 
     // Constructor:
     // Creates a new instance of the class with a given fileName and loads the data
     public PropertyAssessments(String fileName) throws IOException {
         this.fileName = fileName;
-        loadData(fileName);
+        publish(loadData(fileName));
     }
 
     public PropertyAssessments(List<PropertyAssessment> properties) {
         this.fileName = null;
-        this.properties = properties;
+        publish(properties);
     }
 
     // Getters:
     public String getfileName() {
         return fileName;
     }
-    public List<PropertyAssessment> getProperties() {return properties;}
+    public DatasetSnapshot getSnapshot() {return snapshot.get();}
+    public long getVersion() {return snapshot.get().getVersion();}
+    public List<PropertyAssessment> getProperties() {return snapshot.get().getProperties();}
+    public PropertyColumns getColumns() {return snapshot.get().getColumns();}
 
     // Methods:
-    private void loadData(String fileName) throws IOException {
-        // Check the file, open it and start reading:
-        fileName = checkFile(fileName);
-        FileReader CSVFile = new FileReader(fileName);
-        BufferedReader CSVParser = new BufferedReader(CSVFile);
-
-        String line = CSVParser.readLine(); // Skip the first header line
-        while ((line = CSVParser.readLine()) != null) {
-            String[] CSVTokens = line.split(",", -1);
-            addProperty(CSVTokens);
+    // Makes a new version of the data current and returns it. Readers already working on the old
+    // version carry on with it undisturbed.
+    public DatasetSnapshot publish(List<PropertyAssessment> properties) {
+        DatasetSnapshot newSnapshot = new DatasetSnapshot(versions.incrementAndGet(), properties);
+        snapshot.set(newSnapshot);
+        return newSnapshot;
+    }
+
+    // Reads the file again into a new version; until it is complete, everyone keeps reading the old one
+    public DatasetSnapshot reload() throws IOException {
+        if (fileName == null) {
+            throw new IllegalStateException("Not loaded from a file.");
         }
+        return publish(loadData(fileName));
+    }
+
+    private List<PropertyAssessment> loadData(String fileName) throws IOException {
+        List<PropertyAssessment> properties = new ArrayList<>();
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.LOAD)) {
+            // Check the file, open it and start reading:
+            fileName = checkFile(fileName);
+            try (BufferedReader CSVParser = new BufferedReader(new FileReader(fileName))) {
+                String line = CSVParser.readLine(); // Skip the first header line
+                while ((line = CSVParser.readLine()) != null) {
+                    String[] CSVTokens = line.split(",", -1);
+                    properties.add(parseProperty(CSVTokens));
+                }
+            }
 
-        propertyMap = properties.stream()
-                .collect(Collectors.toMap(PropertyAssessment::getAccountID, property -> property));
+            span.setItems(properties.size());
+            Metrics.count("rows.loaded", properties.size());
+        }
+        return properties;
     }
 
     private String checkFile(String fileName) throws FileNotFoundException {
@@ -58,7 +86,7 @@ public class PropertyAssessments {
         return fileName;
     }
 
-    private void addProperty(String[] CSVTokens) {
+    private PropertyAssessment parseProperty(String[] CSVTokens) {
         int accountID = parseInt(CSVTokens[0]);
 
         int suite = parseInt(CSVTokens[1]);
@@ -88,12 +116,7 @@ public class PropertyAssessments {
         String assessmentClass3 = CSVTokens[17];
         AssessmentClass newAssessmentClass = new AssessmentClass(assessmentPercentage1, assessmentPercentage2, assessmentPercentage3, assessmentClass1, assessmentClass2, assessmentClass3);
 
-        PropertyAssessment newProperty = new PropertyAssessment(accountID, newAddress, garage, newNeighborhood, assessedValue, newLocation, newAssessmentClass);
-        properties.add(newProperty);
-
-        if (propertyMap != null) {
-            propertyMap.put(accountID, newProperty);
-        }
+        return new PropertyAssessment(accountID, newAddress, garage, newNeighborhood, assessedValue, newLocation, newAssessmentClass);
     }
 
     private int parseInt(String value) {
@@ -121,69 +144,62 @@ public class PropertyAssessments {
     }
 
     public int getNumberOfRecords() {
-        return properties.size();
+        return snapshot.get().getNumberOfRecords();
     }
 
     public long getMinValue() {
-        long minValue = properties.get(0).getAssessedValue();
+        return snapshot.get().getMinValue();
+    }
 
-        for (PropertyAssessment property : properties) {
-            if (property.getAssessedValue() < minValue) {
-                minValue = property.getAssessedValue();
-            }
-        }
+    public long getMaxValue() {
+        return snapshot.get().getMaxValue();
+    }
 
-        return minValue;
+    public long getRange() {
+        return snapshot.get().getRange();
     }
 
-    public long getMaxValue() {
-        long maxValue = properties.get(0).getAssessedValue();
+    public long getMean() {
+        return snapshot.get().getMean();
+    }
 
-        for (PropertyAssessment property : properties) {
-            if (property.getAssessedValue() > maxValue) {
-                maxValue = property.getAssessedValue();
-            }
-        }
+    public long getMedian() {
+        return snapshot.get().getMedian();
+    }
 
-        return maxValue;
+    public PropertyAssessment getPropertyByAccountID(int accountID) {
+        return snapshot.get().getPropertyByAccountID(accountID);
     }
 
-    public long getRange() {
-        return getMaxValue() - getMinValue();
+    public SpatialIndex getSpatialIndex() {
+        return snapshot.get().getSpatialIndex();
     }
 
-    public long getMean() {
-        long sum = 0;
+    public ColumnStatistics getColumnStatistics() {
+        return snapshot.get().getColumnStatistics();
+    }
 
-        for (PropertyAssessment property : properties) {
-            sum += property.getAssessedValue();
-        }
+    public List<PropertyAssessment> filter(FilterExpression expression) {
+        return snapshot.get().filter(expression);
+    }
 
-        return sum / properties.size();
+    public List<PropertyAssessment> filter(FilterExpression expression, BooleanSupplier cancelled) {
+        return snapshot.get().filter(expression, cancelled);
     }
 
-    public long getMedian() {
-        // Create a mutable list of assessed values
-        List<Long> assessedValues = properties.stream()
-                .map(PropertyAssessment::getAssessedValue)
-                .sorted() // Sort the values
-                .collect(Collectors.toList());
-
-        int size = assessedValues.size();
-        if (size == 0) {
-            throw new IllegalStateException("No properties available to calculate median.");
-        }
+    public BitSet filterRows(FilterExpression expression, BooleanSupplier cancelled) {
+        return snapshot.get().filterRows(expression, cancelled);
+    }
 
-        if (size % 2 == 0) {
-            // For even-sized lists, take the average of the two middle elements
-            return (assessedValues.get(size / 2) + assessedValues.get(size / 2 - 1)) / 2;
-        } else {
-            // For odd-sized lists, take the middle element
-            return assessedValues.get(size / 2);
-        }
+    public List<PropertyAssessment> getPropertiesNear(double x, double y, double tolerance, BitSet shownRows) {
+        return snapshot.get().getPropertiesNear(x, y, tolerance, shownRows);
     }
 
-    public PropertyAssessment getPropertyByAccountID(int accountID) {
-        return propertyMap.get(accountID);
+    public List<PropertyAssessment> getPropertiesInPolygon(SelectionPolygon polygon) {
+        return snapshot.get().getPropertiesInPolygon(polygon);
+    }
+
+    public List<PropertyAssessment> getPropertiesInPolygon(SelectionPolygon polygon, BooleanSupplier cancelled) {
+        return snapshot.get().getPropertiesInPolygon(polygon, cancelled);
     }
-}
\ No newline at end of file
+}
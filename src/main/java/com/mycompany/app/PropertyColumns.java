@@ -0,0 +1,55 @@
+package com.mycompany.app;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Per-row primitive columns derived from the properties once at load, so hot paths (building
+// graphics, clustering, spatial queries) read plain numbers instead of walking the object graph.
+// Locations are kept both as longitude/latitude and pre-projected to Web Mercator, the basemap's
+// spatial reference, so graphics never need to be re-projected. Missing locations are NaN.
+public class PropertyColumns {
+    // Instance variables:
+    private final double[] lngs;
+    private final double[] lats;
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] assessedValues;
+
+    // Constructor:
+    public PropertyColumns(List<PropertyAssessment> properties) {
+        int size = properties.size();
+        lngs = new double[size];
+        lats = new double[size];
+        xs = new double[size];
+        ys = new double[size];
+        assessedValues = new long[size];
+
+        // Every row is independent, so the projection is split across all cores
+        IntStream.range(0, size).parallel().forEach(row -> {
+            PropertyAssessment property = properties.get(row);
+            Location location = property.getLocation();
+            boolean missing = location.getLat() == -1 || location.getLng() == -1;
+
+            lngs[row] = missing ? Double.NaN : location.getLng();
+            lats[row] = missing ? Double.NaN : location.getLat();
+            xs[row] = missing ? Double.NaN : WebMercator.x(location.getLng());
+            ys[row] = missing ? Double.NaN : WebMercator.y(location.getLat());
+            assessedValues[row] = property.getAssessedValue();
+        });
+    }
+
+    // Getters:
+    public int size() {return assessedValues.length;}
+    public double getLng(int row) {return lngs[row];}
+    public double getLat(int row) {return lats[row];}
+    public double getX(int row) {return xs[row];}
+    public double getY(int row) {return ys[row];}
+    public long getAssessedValue(int row) {return assessedValues[row];}
+    public boolean hasLocation(int row) {return !Double.isNaN(xs[row]);}
+
+    // Methods:
+    // Assessed values of rows [from, from + count), into the start of into; a block copy, for scans
+    public void getAssessedValues(int from, long[] into, int count) {
+        System.arraycopy(assessedValues, from, into, 0, count);
+    }
+}
@@ -0,0 +1,280 @@
+package com.mycompany.app;
+
+import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReferences;
+import com.esri.arcgisruntime.mapping.view.Graphic;
+import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+// Keeps exactly one Graphic per property on the map overlay. The graphics are created once, and
+// a filter is applied by toggling visibility on only the rows whose state changed, instead of
+// clearing the overlay and building every graphic again. Graphics carry no symbol of their own:
+// they are colored by the overlay's renderer from the assessed value attribute.
+//
+// In viewport culled mode graphics only exist for shown properties inside the viewport plus a
+// margin, up to a hard cap. Graphics that scroll out of view are hidden and reused for the ones
+// scrolling in, so memory and render cost follow what is on screen rather than the dataset size.
+public class PropertyOverlay {
+    public static final String ACCOUNT_ID_ATTRIBUTE = "accountID";
+    public static final String ASSESSED_VALUE_ATTRIBUTE = "assessedValue";
+
+    // Instance variables:
+    private final GraphicsOverlay graphicsOverlay;
+    private final List<PropertyAssessment> properties;
+    private final PropertyColumns columns;
+    private final Map<Integer, Integer> rowByAccountID = new HashMap<>();
+    private final Graphic[] graphics;
+    private final BitSet visibleRows = new BitSet();
+    private volatile boolean built;
+    private boolean added;
+
+    // Graphics are handed to the overlay a chunk per frame, using about half of a 60 fps frame
+    private static final long FRAME_BUDGET_MILLIS = 8;
+    private FrameBudgetedUpdate population;
+
+    // Viewport culling (spatialIndex is null when every property has its own graphic)
+    private static final double VIEWPORT_MARGIN = 0.5; // Of the viewport's width and height, on each side
+    private final SpatialIndex spatialIndex;
+    private final int maxLiveGraphics;
+    private final Map<Integer, Graphic> liveGraphics = new HashMap<>();
+    private final ArrayDeque<Graphic> recycledGraphics = new ArrayDeque<>();
+    private double[] viewport; // minX, minY, maxX, maxY in WGS84
+    private double[] materializedEnvelope;
+
+    // Constructor:
+    public PropertyOverlay(GraphicsOverlay graphicsOverlay, List<PropertyAssessment> properties, PropertyColumns columns) {
+        this(graphicsOverlay, properties, columns, null, 0);
+    }
+
+    // Viewport culled overlay; spatialIndex must index the properties' longitude/latitude by row
+    public PropertyOverlay(GraphicsOverlay graphicsOverlay, List<PropertyAssessment> properties, PropertyColumns columns, SpatialIndex spatialIndex, int maxLiveGraphics) {
+        this.graphicsOverlay = graphicsOverlay;
+        this.properties = properties;
+        this.columns = columns;
+        this.spatialIndex = spatialIndex;
+        this.maxLiveGraphics = maxLiveGraphics;
+        this.graphics = spatialIndex == null ? new Graphic[properties.size()] : new Graphic[0];
+
+        for (int row = 0; row < properties.size(); row++) {
+            rowByAccountID.put(properties.get(row).getAccountID(), row);
+        }
+    }
+
+    // Getters:
+    public GraphicsOverlay getGraphicsOverlay() {return graphicsOverlay;}
+    public boolean isBuilt() {return built;}
+    public boolean isAdded() {return added;}
+    public boolean isPopulating() {return population != null && !population.isFinished();}
+    public int getVisibleCount() {return visibleRows.cardinality();}
+    public boolean isViewportCulled() {return spatialIndex != null;}
+    public int getLiveGraphicCount() {return isViewportCulled() ? liveGraphics.size() : graphics.length;}
+
+    // Methods:
+    // Builds the graphic for every property, all shown. Safe to run off the FX thread; returns false if cancelled.
+    public boolean buildGraphics(BooleanSupplier cancelled, BiConsumer<Integer, Integer> progress) {
+        if (isViewportCulled()) {
+            built = true; // Graphics are created as they come into view
+            return true;
+        }
+
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.GRAPHIC_PREPARATION)) {
+            for (int row = 0; row < properties.size(); row++) {
+                if (cancelled.getAsBoolean()) {
+                    span.setItems(row);
+                    return false;
+                }
+
+                PropertyAssessment property = properties.get(row);
+                Graphic graphic = new Graphic(createPoint(row));
+                graphic.getAttributes().put(ACCOUNT_ID_ATTRIBUTE, property.getAccountID());
+                graphic.getAttributes().put(ASSESSED_VALUE_ATTRIBUTE, (double) property.getAssessedValue());
+                graphics[row] = graphic;
+
+                progress.accept(row + 1, properties.size());
+            }
+
+            span.setItems(properties.size());
+            Metrics.count("graphics.created", properties.size());
+        }
+
+        built = true;
+        return true;
+    }
+
+    // Adds the built graphics to the overlay, once, spread over as many frames as it takes to keep
+    // the UI responsive. They count as shown straight away, so visibility can be applied to them
+    // while they are still being added. Call on the FX thread.
+    public void addGraphicsToOverlay() {
+        if (added) {
+            return;
+        }
+        if (isViewportCulled()) {
+            visibleRows.set(0, properties.size());
+            added = true;
+            materialize();
+            return;
+        }
+
+        List<Graphic> allGraphics = Arrays.asList(graphics);
+        population = new FrameBudgetedUpdate(graphics.length, FRAME_BUDGET_MILLIS,
+                (from, to) -> {
+                    try (Metrics.Span span = Metrics.start(Metrics.Phase.OVERLAY_UPDATE)) {
+                        graphicsOverlay.getGraphics().addAll(allGraphics.subList(from, to));
+                        span.setItems(to - from);
+                    }
+                },
+                () -> population = null);
+        population.start();
+        visibleRows.set(0, graphics.length);
+        added = true;
+    }
+
+    public BitSet allRows() {
+        BitSet rows = new BitSet(properties.size());
+        rows.set(0, properties.size());
+        return rows;
+    }
+
+    public BitSet rowsOf(Collection<PropertyAssessment> shownProperties) {
+        BitSet rows = new BitSet(properties.size());
+        for (PropertyAssessment property : shownProperties) {
+            Integer row = rowByAccountID.get(property.getAccountID());
+            if (row != null) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    // Rows that would flip between shown and hidden if newVisibleRows were applied
+    public BitSet changedRows(BitSet newVisibleRows) {
+        BitSet changed = (BitSet) visibleRows.clone();
+        changed.xor(newVisibleRows);
+        return changed;
+    }
+
+    // Shows exactly newVisibleRows, touching only the graphics that change. Call on the FX thread.
+    public int applyVisibility(BitSet newVisibleRows) {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.OVERLAY_UPDATE)) {
+            BitSet changed = changedRows(newVisibleRows);
+            span.setItems(changed.cardinality());
+
+            if (isViewportCulled()) {
+                visibleRows.clear();
+                visibleRows.or(newVisibleRows);
+                materialize();
+                return changed.cardinality();
+            }
+
+            for (int row = changed.nextSetBit(0); row >= 0; row = changed.nextSetBit(row + 1)) {
+                graphics[row].setVisible(newVisibleRows.get(row));
+            }
+
+            visibleRows.clear();
+            visibleRows.or(newVisibleRows);
+            return changed.cardinality();
+        }
+    }
+
+    // Tells a culled overlay what is on screen. Graphics are only rebuilt once the viewport leaves
+    // the materialized envelope, or shrinks well inside it after zooming in. Call on the FX thread.
+    public void setViewport(double minX, double minY, double maxX, double maxY) {
+        if (!isViewportCulled()) {
+            return;
+        }
+        viewport = new double[]{minX, minY, maxX, maxY};
+
+        if (materializedEnvelope != null
+                && minX >= materializedEnvelope[0] && minY >= materializedEnvelope[1]
+                && maxX <= materializedEnvelope[2] && maxY <= materializedEnvelope[3]
+                && (maxX - minX) * 2 > materializedEnvelope[2] - materializedEnvelope[0]) {
+            return;
+        }
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.OVERLAY_UPDATE)) {
+            materialize();
+            span.setItems(liveGraphics.size());
+        }
+    }
+
+    // Makes the live graphics match the shown rows inside the viewport plus its margin
+    private void materialize() {
+        if (!added || viewport == null) {
+            return;
+        }
+
+        double marginX = (viewport[2] - viewport[0]) * VIEWPORT_MARGIN;
+        double marginY = (viewport[3] - viewport[1]) * VIEWPORT_MARGIN;
+        materializedEnvelope = new double[]{viewport[0] - marginX, viewport[1] - marginY, viewport[2] + marginX, viewport[3] + marginY};
+
+        BitSet wanted = new BitSet(properties.size());
+        spatialIndex.forEachInEnvelope(materializedEnvelope[0], materializedEnvelope[1], materializedEnvelope[2], materializedEnvelope[3], row -> {
+            if (visibleRows.get(row)) {
+                wanted.set(row);
+            }
+        });
+
+        // Over the cap, keep an even sample across the area rather than whichever rows come first
+        BitSet materializedRows = wanted.cardinality() > maxLiveGraphics ? sampleEvenly(wanted, maxLiveGraphics) : wanted;
+
+        // Release graphics that left the envelope before taking any, so they can be reused straight away
+        liveGraphics.entrySet().removeIf(entry -> {
+            if (materializedRows.get(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().setVisible(false);
+            recycledGraphics.push(entry.getValue());
+            return true;
+        });
+
+        List<Graphic> newGraphics = new ArrayList<>();
+        for (int row = materializedRows.nextSetBit(0); row >= 0; row = materializedRows.nextSetBit(row + 1)) {
+            if (liveGraphics.containsKey(row)) {
+                continue;
+            }
+
+            PropertyAssessment property = properties.get(row);
+            Point point = createPoint(row);
+            Graphic graphic = recycledGraphics.poll();
+            if (graphic == null) {
+                graphic = new Graphic(point);
+                newGraphics.add(graphic);
+            } else {
+                graphic.setGeometry(point);
+                graphic.setVisible(true);
+            }
+            graphic.getAttributes().put(ACCOUNT_ID_ATTRIBUTE, property.getAccountID());
+            graphic.getAttributes().put(ASSESSED_VALUE_ATTRIBUTE, (double) property.getAssessedValue());
+            liveGraphics.put(row, graphic);
+        }
+
+        graphicsOverlay.getGraphics().addAll(newGraphics);
+        Metrics.count("graphics.created", newGraphics.size());
+    }
+
+    // Already in the basemap's spatial reference, so the runtime has nothing to re-project
+    private Point createPoint(int row) {
+        return new Point(columns.getX(row), columns.getY(row), SpatialReferences.getWebMercator());
+    }
+
+    private static BitSet sampleEvenly(BitSet rows, int limit) {
+        BitSet sample = new BitSet();
+        long total = rows.cardinality();
+        long seen = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1), seen++) {
+            if (seen * limit / total != (seen + 1) * limit / total) {
+                sample.set(row);
+            }
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.app;
+
+import javafx.concurrent.Task;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs map queries (filters, highlights, overlay rebuilds) one at a time, newest first.
+// Every submission gets a generation number; submitting a new query cancels the one before it,
+// and a query that is still waiting out the coalescing delay is dropped without ever running.
+// The delay is waited out on a shared timer and the query itself runs on the given pool.
+public class QueryScheduler {
+    // Instance variables:
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final long coalesceMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private Task<?> currentTask;
+    private ScheduledFuture<?> pendingStart;
+
+    // Constructor:
+    public QueryScheduler(ScheduledExecutorService timer, Executor executor, long coalesceMillis) {
+        this.timer = timer;
+        this.executor = executor;
+        this.coalesceMillis = coalesceMillis;
+    }
+
+    // Methods:
+    // Supersedes whatever query came before and returns the generation of the new one
+    public synchronized long submit(Task<?> task) {
+        long queryGeneration = generation.incrementAndGet();
+
+        if (pendingStart != null) {
+            pendingStart.cancel(false); // Still coalescing, so it never started
+        }
+        if (currentTask != null) {
+            currentTask.cancel(); // Running scans check isCancelled() and stop early
+        }
+
+        currentTask = task;
+        pendingStart = timer.schedule(() -> executor.execute(task), coalesceMillis, TimeUnit.MILLISECONDS);
+        return queryGeneration;
+    }
+
+    // For interactions applied directly on the FX thread: cancels outstanding work so its result
+    // can't overwrite the map afterwards, without scheduling anything new
+    public synchronized long supersede() {
+        long queryGeneration = generation.incrementAndGet();
+
+        if (pendingStart != null) {
+            pendingStart.cancel(false);
+        }
+        if (currentTask != null) {
+            currentTask.cancel();
+        }
+
+        currentTask = null;
+        pendingStart = null;
+        return queryGeneration;
+    }
+
+    // A result is only worth applying if nothing newer has been submitted since
+    public boolean isCurrent(long queryGeneration) {
+        return generation.get() == queryGeneration;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    // Cancels whatever is outstanding; the threads belong to the shared pools
+    public void shutdown() {
+        supersede();
+    }
+}
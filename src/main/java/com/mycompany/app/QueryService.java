@@ -0,0 +1,276 @@
+package com.mycompany.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Read-only HTTP/JSON API over loaded property data, so other tools can run the viewer's lookups
+// without parsing the CSV themselves. Uses the JDK's built-in server, bound to localhost.
+//
+//     GET /accounts/{accountID}                       one property, or 404
+//     GET /properties?filter=<spec>[&limit=<n>]       matching properties, streamed as a JSON array
+//     GET /statistics?filter=<spec>                   count, min, max, mean and median assessed value
+//     GET /nearest?lat=<lat>&lng=<lng>[&radius=<m>]   nearest property and any at the same spot, within
+//                                                     radius meters on the ground (default 50)
+//
+// Filter specs use the same syntax as batch reports (see FilterExpression.parse); leaving the filter
+// out means all properties. Each request reads one dataset snapshot, so a reload in the middle of it
+// can't mix versions. Can be run on its own: QueryService <csv file> [port]
+public class QueryService {
+    public static final int DEFAULT_PORT = 8085;
+    private static final double DEFAULT_NEAREST_RADIUS_METERS = 50; // On the ground
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+    // Instance variables:
+    private final PropertyAssessments properties;
+    private final Executor executor;
+    private HttpServer server;
+
+    // Constructor:
+    // Requests are handled on the given executor; they block on the socket, so it should be an I/O pool
+    public QueryService(PropertyAssessments properties, Executor executor) {
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    // Getters:
+    public int getPort() {return server.getAddress().getPort();}
+
+    // Methods:
+    public void start(int port) throws IOException {
+        // Without this, Nagle's algorithm and delayed ACKs hold each small response back ~40 ms.
+        // Read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        properties.getSnapshot().getColumnStatistics(); // Built here rather than by the first few concurrent requests
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/accounts/", handler(this::account));
+        server.createContext("/properties", handler(this::properties));
+        server.createContext("/statistics", handler(this::statistics));
+        server.createContext("/nearest", handler(this::nearest));
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void account(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int accountID = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+
+        PropertyAssessment property = properties.getSnapshot().getPropertyByAccountID(accountID);
+        if (property == null) {
+            sendError(exchange, 404, "No property with account " + accountID);
+            return;
+        }
+        StringWriter body = new StringWriter();
+        writeProperty(new JsonWriter(body), property);
+        sendJson(exchange, 200, body);
+    }
+
+    private void properties(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        // Bad parameters are found before the response starts, while a 400 can still be sent
+        int limit = parameters.containsKey("limit") ? limitOf(parameters.get("limit")) : Integer.MAX_VALUE;
+        FilterExpression filter = filterOf(parameters);
+        DatasetSnapshot snapshot = properties.getSnapshot();
+
+        // Each match is written as the filter finds it, so the result is never held in memory
+        try (Writer writer = startResponse(exchange)) {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginArray();
+            try {
+                snapshot.forEachMatch(filter, limit, () -> false, property -> {
+                    try {
+                        writeProperty(json, property);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // Usually the client going away
+            }
+            json.endArray();
+        }
+    }
+
+    private void statistics(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String filterSpec = parameters.getOrDefault("filter", "all");
+        long[] values = properties.getSnapshot().filter(filterOf(parameters)).stream()
+                .mapToLong(PropertyAssessment::getAssessedValue)
+                .toArray();
+
+        StringWriter body = new StringWriter();
+        JsonWriter json = new JsonWriter(body);
+        json.beginObject();
+        json.name("filter").value(filterSpec);
+        json.name("count").value(values.length);
+        if (values.length > 0) {
+            BatchReport.GroupStatistics statistics = BatchReport.GroupStatistics.of(filterSpec, values);
+            json.name("min").value(statistics.getMin());
+            json.name("max").value(statistics.getMax());
+            json.name("mean").value(statistics.getMean());
+            json.name("median").value(statistics.getMedian());
+        }
+        json.endObject();
+        sendJson(exchange, 200, body);
+    }
+
+    private void nearest(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        if (!parameters.containsKey("lat") || !parameters.containsKey("lng")) {
+            throw new IllegalArgumentException("lat and lng are required");
+        }
+        double lat = Double.parseDouble(parameters.get("lat"));
+        double lng = Double.parseDouble(parameters.get("lng"));
+        double radius = parameters.containsKey("radius") ? Double.parseDouble(parameters.get("radius")) : DEFAULT_NEAREST_RADIUS_METERS;
+
+        // The index is in Web Mercator, where ground meters are stretched with latitude
+        double projectedRadius = WebMercator.projectedDistance(radius, lat);
+        List<PropertyAssessment> nearest = properties.getSnapshot().getPropertiesNear(WebMercator.x(lng), WebMercator.y(lat), projectedRadius, null);
+        StringWriter body = new StringWriter();
+        JsonWriter json = new JsonWriter(body);
+        json.beginArray();
+        for (PropertyAssessment property : nearest) {
+            writeProperty(json, property);
+        }
+        json.endArray();
+        sendJson(exchange, 200, body);
+    }
+
+    private static int limitOf(String value) {
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("limit must be a whole number of at least 0, not \"" + value + "\"");
+    }
+
+    private static FilterExpression filterOf(Map<String, String> parameters) {
+        return FilterExpression.parse(parameters.getOrDefault("filter", "all"));
+    }
+
+    private static void writeProperty(JsonWriter json, PropertyAssessment property) throws IOException {
+        Neighborhood neighborhood = property.getNeighborhood();
+        AssessmentClass assessmentClass = property.getAssessmentClass();
+
+        json.beginObject();
+        json.name("accountID").value(property.getAccountID());
+        json.name("address").value(property.getAddress().toString());
+        json.name("garage").value(property.getGarage());
+        json.name("neighborhoodID").value(neighborhood.getNeighborhoodID());
+        json.name("neighborhood").value(neighborhood.getNeighborhoodName());
+        json.name("ward").value(neighborhood.getWard());
+        json.name("assessedValue").value(property.getAssessedValue());
+        json.name("lat").value(property.getLocation().getLat());
+        json.name("lng").value(property.getLocation().getLng());
+        json.name("assessmentClass").value(assessmentClass.toString());
+        json.endObject();
+    }
+
+    // For results of unknown size: chunked, so they go out as they are written instead of being built in memory first
+    private static Writer startResponse(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), RESPONSE_BUFFER_SIZE);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter body = new StringWriter();
+        JsonWriter json = new JsonWriter(body);
+        json.beginObject();
+        json.name("error").value(message);
+        json.endObject();
+        sendJson(exchange, status, body);
+    }
+
+    // Once a streamed response has started its status can't change; closing it early is all that's left
+    private static void sendErrorIfNotStarted(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            sendError(exchange, status, message);
+        }
+    }
+
+    // Small responses go out in one piece with a Content-Length
+    private static void sendJson(HttpExchange exchange, int status, StringWriter body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Wraps an endpoint with GET-only checking, query parsing and bad request handling
+    private static HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    sendError(exchange, 405, "Only GET is supported");
+                    return;
+                }
+                endpoint.handle(exchange, parametersOf(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException e) { // Includes NumberFormatException
+                sendErrorIfNotStarted(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                sendErrorIfNotStarted(exchange, 500, "Internal error");
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private static Map<String, String> parametersOf(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: QueryService <csv file> [port]");
+            System.exit(1);
+        }
+
+        PropertyAssessments properties = new PropertyAssessments(args[0]);
+        // On its own there is no app to share threads with, so requests get one pool of their own
+        QueryService service = new QueryService(properties, Executors.newCachedThreadPool());
+        service.start(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+        System.out.println("Serving " + properties.getNumberOfRecords() + " properties on http://localhost:" + service.getPort() + "/");
+    }
+}
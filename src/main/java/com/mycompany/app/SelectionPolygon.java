@@ -0,0 +1,116 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// An area to select properties in, as longitude/latitude rings. Rings are combined with the
+// even-odd rule, so holes and multi-part areas (MULTIPOLYGON) work without extra bookkeeping.
+public class SelectionPolygon {
+    // Innermost parenthesised coordinate list of a WKT string, e.g. "(x y, x y, ...)"
+    private static final Pattern WKT_RING = Pattern.compile("\\(([^()]+)\\)");
+
+    // Instance variables:
+    private final List<double[]> ringXs = new ArrayList<>();
+    private final List<double[]> ringYs = new ArrayList<>();
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    // Constructor:
+    public SelectionPolygon() {
+    }
+
+    // Getters:
+    public double getMinX() {return minX;}
+    public double getMinY() {return minY;}
+    public double getMaxX() {return maxX;}
+    public double getMaxY() {return maxY;}
+    public int getRingCount() {return ringXs.size();}
+    public boolean isEmpty() {return ringXs.isEmpty();}
+    public double[] getRingXs(int ring) {return ringXs.get(ring).clone();}
+    public double[] getRingYs(int ring) {return ringYs.get(ring).clone();}
+
+    // Methods:
+    // Adds a ring of (x, y) vertices; a closing vertex equal to the first one is optional
+    public void addRing(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Ring has " + xs.length + " x values but " + ys.length + " y values.");
+        }
+        if (xs.length < 3) {
+            throw new IllegalArgumentException("A ring needs at least 3 vertices.");
+        }
+
+        ringXs.add(xs.clone());
+        ringYs.add(ys.clone());
+        for (int i = 0; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+    }
+
+    public boolean envelopeContains(double x, double y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    // Exact point-in-polygon test (ray casting, even-odd over all rings)
+    public boolean contains(double x, double y) {
+        if (!envelopeContains(x, y)) {
+            return false;
+        }
+
+        boolean inside = false;
+        for (int r = 0; r < ringXs.size(); r++) {
+            double[] xs = ringXs.get(r);
+            double[] ys = ringYs.get(r);
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > y) != (ys[j] > y)
+                        && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    // Parses POLYGON or MULTIPOLYGON well-known text with "longitude latitude" coordinates
+    public static SelectionPolygon fromWkt(String wkt) {
+        String trimmed = wkt.trim().toUpperCase();
+        if (!trimmed.startsWith("POLYGON") && !trimmed.startsWith("MULTIPOLYGON")) {
+            throw new IllegalArgumentException("Only POLYGON and MULTIPOLYGON WKT is supported.");
+        }
+
+        SelectionPolygon polygon = new SelectionPolygon();
+        Matcher ringMatcher = WKT_RING.matcher(trimmed);
+        while (ringMatcher.find()) {
+            String[] vertices = ringMatcher.group(1).split(",");
+            double[] xs = new double[vertices.length];
+            double[] ys = new double[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                String[] coordinates = vertices[i].trim().split("\\s+");
+                if (coordinates.length < 2) {
+                    throw new IllegalArgumentException("Invalid WKT vertex: " + vertices[i].trim());
+                }
+                xs[i] = Double.parseDouble(coordinates[0]);
+                ys[i] = Double.parseDouble(coordinates[1]);
+            }
+            polygon.addRing(xs, ys);
+        }
+
+        if (polygon.isEmpty()) {
+            throw new IllegalArgumentException("WKT does not contain any polygon rings.");
+        }
+        return polygon;
+    }
+
+    public static SelectionPolygon fromWktFile(Path path) throws IOException {
+        return fromWkt(Files.readString(path));
+    }
+}
@@ -0,0 +1,170 @@
+package com.mycompany.app;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Uniform grid over point coordinates. Rows are bucketed by cell and stored contiguously
+// (cellStart[c] .. cellStart[c + 1] in cellRows), so an envelope query only touches the
+// cells it overlaps instead of every point in the dataset.
+public class SpatialIndex {
+    // Points that land in the same cell, on average, before the grid gets finer
+    private static final int TARGET_POINTS_PER_CELL = 8;
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    // Instance variables:
+    private final double[] xs;
+    private final double[] ys;
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellRows;
+
+    // Constructor:
+    // Points whose coordinate is NaN are left out of the index
+    public SpatialIndex(double[] xs, double[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int indexed = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (!isIndexed(i)) continue;
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            indexed++;
+        }
+        if (indexed == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        int cellsPerAxis = (int) Math.ceil(Math.sqrt((double) indexed / TARGET_POINTS_PER_CELL));
+        cellsPerAxis = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, cellsPerAxis));
+
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = cellsPerAxis;
+        this.rows = cellsPerAxis;
+        // Pad slightly so the max coordinate still falls inside the last cell
+        this.cellWidth = Math.max((maxX - minX) / columns, 1e-9) * (1 + 1e-9);
+        this.cellHeight = Math.max((maxY - minY) / rows, 1e-9) * (1 + 1e-9);
+
+        // Counting sort of the rows by cell
+        int[] cellOf = new int[xs.length];
+        int[] counts = new int[columns * rows + 1];
+        for (int i = 0; i < xs.length; i++) {
+            if (!isIndexed(i)) {
+                cellOf[i] = -1;
+                continue;
+            }
+            cellOf[i] = cellIndex(column(xs[i]), row(ys[i]));
+            counts[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            counts[c + 1] += counts[c];
+        }
+        this.cellStart = Arrays.copyOf(counts, counts.length);
+        this.cellRows = new int[indexed];
+        for (int i = 0; i < xs.length; i++) {
+            if (cellOf[i] >= 0) {
+                cellRows[counts[cellOf[i]]++] = i;
+            }
+        }
+    }
+
+    // Getters:
+    public int size() {return cellRows.length;}
+
+    // Methods:
+    private boolean isIndexed(int i) {
+        return !Double.isNaN(xs[i]) && !Double.isNaN(ys[i]);
+    }
+
+    private int column(double x) {
+        return clamp((int) ((x - minX) / cellWidth), columns);
+    }
+
+    private int row(double y) {
+        return clamp((int) ((y - minY) / cellHeight), rows);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+
+    // Calls the consumer with every row whose point lies inside the envelope (inclusive)
+    public void forEachInEnvelope(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY, IntConsumer consumer) {
+        if (cellRows.length == 0 || queryMaxX < minX || queryMaxY < minY
+                || queryMinX > minX + cellWidth * columns || queryMinY > minY + cellHeight * rows) {
+            return;
+        }
+
+        int firstColumn = column(queryMinX), lastColumn = column(queryMaxX);
+        int firstRow = row(queryMinY), lastRow = row(queryMaxY);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = cellIndex(c, r);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellRows[k];
+                    if (xs[i] >= queryMinX && xs[i] <= queryMaxX && ys[i] >= queryMinY && ys[i] <= queryMaxY) {
+                        consumer.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    // Number of points in the cells the envelope overlaps: an upper bound on the rows inside it,
+    // from the cell counts alone. A grid row's cells are contiguous, so this is one subtraction per
+    // grid row rather than a visit to every point.
+    public int countInEnvelopeCells(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY) {
+        if (cellRows.length == 0 || queryMaxX < minX || queryMaxY < minY
+                || queryMinX > minX + cellWidth * columns || queryMinY > minY + cellHeight * rows) {
+            return 0;
+        }
+
+        int firstColumn = column(queryMinX), lastColumn = column(queryMaxX);
+        int count = 0;
+        for (int r = row(queryMinY); r <= row(queryMaxY); r++) {
+            count += cellStart[cellIndex(lastColumn, r) + 1] - cellStart[cellIndex(firstColumn, r)];
+        }
+        return count;
+    }
+
+    // Rows inside the envelope, in ascending row order
+    public int[] queryEnvelope(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY) {
+        IntList matches = new IntList();
+        forEachInEnvelope(queryMinX, queryMinY, queryMaxX, queryMaxY, matches::add);
+        int[] result = matches.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Growable int array so large queries don't box every row into an Integer
+    private static final class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.mycompany.app;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Generates assessment CSVs in the same 18-column layout as the city's extract, at any size, for
+// benchmarks and soak tests. Properties are grouped into neighborhoods scattered around Edmonton,
+// each with its own ward, streets and price level; values are log-normal within a neighborhood with
+// a long commercial tail, and some fields are left blank the way they are in the real data.
+//
+// Output depends only on the seed and row count: rows are generated in fixed-size chunks, each
+// with its own random stream, so chunks can be built in parallel and written in order.
+//
+// Can be run on its own: SyntheticDataset <output csv> <rows> [seed]
+public class SyntheticDataset {
+    public static final String HEADER = "Account Number,Suite,House Number,Street Name,Garage,Neighbourhood ID,Neighbourhood,Ward,"
+            + "Assessed Value,Latitude,Longitude,Point Location,Assessment Class % 1,Assessment Class % 2,Assessment Class % 3,"
+            + "Assessment Class 1,Assessment Class 2,Assessment Class 3";
+
+    private static final int NEIGHBORHOOD_COUNT = 400;
+    private static final int WARD_COUNT = 12;
+    private static final int STREETS_PER_NEIGHBORHOOD = 12;
+    private static final int CHUNK_ROWS = 50000;
+    private static final long FIRST_ACCOUNT = 1000000;
+
+    // City center, and how far neighborhoods spread from it in degrees
+    private static final double CENTER_LAT = 53.5461;
+    private static final double CENTER_LNG = -113.4938;
+    private static final double CITY_SPREAD_LAT = 0.06;
+    private static final double CITY_SPREAD_LNG = 0.10;
+
+    private static final String[] WARDS = {"Anirniq", "Dene", "Ipiihkoohkanipiaohtsi", "Karhiio", "M\u00e9tis", "Nakota Isga",
+            "O-day'min", "papastew", "pih\u00easiwin", "Sspomitapi", "sipiwiyiniwak", "tastawiyiniwak"};
+    private static final String[] NEIGHBORHOOD_WORDS = {"ABBOTTSFIELD", "BELVEDERE", "CAMERON", "DOVERCOURT", "ELLERSLIE",
+            "FOREST", "GLENWOOD", "HIGHLANDS", "IDYLWYLDE", "JASPER", "KESWICK", "LAUDERDALE", "MILL CREEK", "NORWOOD",
+            "OTTEWELL", "PARKDALE", "QUEEN MARY", "RIVERDALE", "SUMMERSIDE", "TERWILLEGAR", "WINDERMERE", "YOUNGSTOWN"};
+    private static final String[] STREET_TYPES = {"STREET NW", "AVENUE NW", "ROAD NW", "DRIVE NW", "CRESCENT NW", "WAY SW"};
+
+    // Instance variables:
+    private final long seed;
+    private final Neighborhood[] neighborhoods = new Neighborhood[NEIGHBORHOOD_COUNT];
+    private final double[] neighborhoodWeights = new double[NEIGHBORHOOD_COUNT]; // Cumulative, for picking by size
+    private final String[][] streets = new String[NEIGHBORHOOD_COUNT][STREETS_PER_NEIGHBORHOOD];
+    private final double[] centerLats = new double[NEIGHBORHOOD_COUNT];
+    private final double[] centerLngs = new double[NEIGHBORHOOD_COUNT];
+    private final double[] radii = new double[NEIGHBORHOOD_COUNT];
+    private final double[] medianValues = new double[NEIGHBORHOOD_COUNT];
+
+    // Constructor:
+    // Lays out the neighborhoods; the same seed always gives the same city
+    public SyntheticDataset(long seed) {
+        this.seed = seed;
+        Random random = new Random(seed);
+
+        double totalWeight = 0;
+        for (int i = 0; i < NEIGHBORHOOD_COUNT; i++) {
+            String name = NEIGHBORHOOD_WORDS[i % NEIGHBORHOOD_WORDS.length]
+                    + (i < NEIGHBORHOOD_WORDS.length ? "" : " " + (i / NEIGHBORHOOD_WORDS.length + 1));
+
+            // Denser near the center, with the ward following the direction from downtown
+            double lat = CENTER_LAT + random.nextGaussian() * CITY_SPREAD_LAT;
+            double lng = CENTER_LNG + random.nextGaussian() * CITY_SPREAD_LNG;
+            double angle = Math.atan2(lat - CENTER_LAT, (lng - CENTER_LNG) * 0.6) + Math.PI;
+            int ward = Math.min(WARD_COUNT - 1, (int) (angle / (2 * Math.PI) * WARD_COUNT));
+
+            neighborhoods[i] = new Neighborhood(1000 + i, name, WARDS[ward] + " Ward");
+            centerLats[i] = lat;
+            centerLngs[i] = lng;
+            radii[i] = 0.004 + random.nextDouble() * 0.008;
+            medianValues[i] = Math.exp(12.6 + random.nextGaussian() * 0.35); // Around $300k, varying by area
+
+            for (int street = 0; street < STREETS_PER_NEIGHBORHOOD; street++) {
+                streets[i][street] = (10 + random.nextInt(190)) + " " + STREET_TYPES[random.nextInt(STREET_TYPES.length)];
+            }
+
+            // A few big neighborhoods and many small ones
+            totalWeight += Math.exp(random.nextGaussian() * 0.8);
+            neighborhoodWeights[i] = totalWeight;
+        }
+        for (int i = 0; i < NEIGHBORHOOD_COUNT; i++) {
+            neighborhoodWeights[i] /= totalWeight;
+        }
+    }
+
+    // Methods:
+    // Writes rows properties plus the header line. The file appears under its name only once complete.
+    public void write(Path file, long rows) throws IOException {
+        long chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        int chunksPerBatch = Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 20)) {
+            out.write((HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+
+            // Batches of chunks are generated in parallel, then written in order
+            for (long firstChunk = 0; firstChunk < chunks; firstChunk += chunksPerBatch) {
+                long batchStart = firstChunk;
+                int batchSize = (int) Math.min(chunksPerBatch, chunks - firstChunk);
+                byte[][] batch = new byte[batchSize][];
+                IntStream.range(0, batchSize).parallel().forEach(i -> {
+                    long chunk = batchStart + i;
+                    long from = chunk * CHUNK_ROWS;
+                    batch[i] = generateChunk(chunk, from, Math.min(rows, from + CHUNK_ROWS));
+                });
+                for (byte[] bytes : batch) {
+                    out.write(bytes);
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private byte[] generateChunk(long chunk, long fromRow, long toRow) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9e3779b97f4a7c15L + chunk);
+        StringBuilder csv = new StringBuilder((int) (toRow - fromRow) * 160);
+        for (long row = fromRow; row < toRow; row++) {
+            appendRow(csv, row, random);
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendRow(StringBuilder csv, long row, SplittableRandom random) {
+        int neighborhood = pickNeighborhood(random.nextDouble());
+        Neighborhood area = neighborhoods[neighborhood];
+        double classRoll = random.nextDouble();
+
+        csv.append(FIRST_ACCOUNT + row).append(',');
+
+        // Suites on about one property in eight; house numbers and garage flags are sometimes missing
+        if (random.nextInt(8) == 0) {
+            csv.append(1 + random.nextInt(2400));
+        }
+        csv.append(',');
+        if (random.nextInt(40) != 0) {
+            csv.append(1 + random.nextInt(19999));
+        }
+        csv.append(',');
+        csv.append(streets[neighborhood][random.nextInt(STREETS_PER_NEIGHBORHOOD)]).append(',');
+        int garageRoll = random.nextInt(100);
+        csv.append(garageRoll < 2 ? "" : garageRoll < 60 ? "Y" : "N").append(',');
+
+        csv.append(area.getNeighborhoodID()).append(',');
+        csv.append(area.getNeighborhoodName()).append(',');
+        csv.append(area.getWard()).append(',');
+
+        csv.append(assessedValue(neighborhood, classRoll, random)).append(',');
+
+        // Points cluster around their neighborhood's center; about one in a hundred has no location
+        if (random.nextInt(100) == 0) {
+            csv.append(",,,");
+        } else {
+            double lat = centerLats[neighborhood] + gaussian(random) * radii[neighborhood];
+            double lng = centerLngs[neighborhood] + gaussian(random) * radii[neighborhood] * 1.7;
+            int start = csv.length();
+            appendDegrees(csv, lat);
+            String latText = csv.substring(start);
+            csv.append(',');
+            start = csv.length();
+            appendDegrees(csv, lng);
+            String lngText = csv.substring(start);
+            csv.append(',');
+            csv.append("POINT (").append(lngText).append(' ').append(latText).append("),");
+        }
+
+        appendClasses(csv, classRoll, random);
+        csv.append('\n');
+    }
+
+    // Log-normal around the neighborhood's median; commercial properties get a Pareto tail and a
+    // few properties are assessed at nothing, as in the real extract
+    private long assessedValue(int neighborhood, double classRoll, SplittableRandom random) {
+        if (random.nextInt(200) == 0) {
+            return 0;
+        }
+        double value = medianValues[neighborhood] * Math.exp(gaussian(random) * 0.45);
+        if (classRoll >= 0.90) {
+            value *= Math.min(1000, Math.pow(1 - random.nextDouble(), -1 / 1.3));
+        }
+        return Math.round(value / 500) * 500;
+    }
+
+    // Mostly single-class residential; some commercial and farmland, and a few mixed properties
+    private static void appendClasses(StringBuilder csv, double classRoll, SplittableRandom random) {
+        if (classRoll < 0.86) {
+            csv.append("100,,,RESIDENTIAL,,");
+        } else if (classRoll < 0.90) {
+            csv.append("100,,,OTHER RESIDENTIAL,,");
+        } else if (classRoll < 0.96) {
+            csv.append("100,,,COMMERCIAL,,");
+        } else if (classRoll < 0.97) {
+            csv.append("100,,,FARMLAND,,");
+        } else if (classRoll < 0.995) {
+            int first = 5 * (2 + random.nextInt(17));
+            csv.append(first).append(',').append(100 - first).append(",,COMMERCIAL,RESIDENTIAL,");
+        } else {
+            int first = 5 * (2 + random.nextInt(12));
+            int second = 5 * (1 + random.nextInt(18 - first / 5));
+            csv.append(first).append(',').append(second).append(',').append(100 - first - second)
+                    .append(",COMMERCIAL,RESIDENTIAL,OTHER RESIDENTIAL");
+        }
+    }
+
+    // Six decimal places, like the extract; much cheaper than String.format over millions of rows
+    private static void appendDegrees(StringBuilder csv, double degrees) {
+        long micro = Math.round(degrees * 1e6);
+        if (micro < 0) {
+            csv.append('-');
+            micro = -micro;
+        }
+        String fraction = Long.toString(micro % 1000000);
+        csv.append(micro / 1000000).append('.');
+        for (int i = fraction.length(); i < 6; i++) {
+            csv.append('0');
+        }
+        csv.append(fraction);
+    }
+
+    private int pickNeighborhood(double roll) {
+        int low = 0, high = NEIGHBORHOOD_COUNT - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (neighborhoodWeights[middle] < roll) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Standard normal (Box-Muller); SplittableRandom has no nextGaussian on Java 17
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticDataset <output csv> <rows> [seed]");
+            System.exit(1);
+        }
+
+        Path file = Path.of(args[0]);
+        long rows = Long.parseLong(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 2024;
+
+        long startTime = System.nanoTime();
+        new SyntheticDataset(seed).write(file, rows);
+        System.out.printf("Wrote %d properties (%.1f MB) to %s in %.1f s%n",
+                rows, Files.size(file) / 1e6, file.toAbsolutePath(), (System.nanoTime() - startTime) / 1e9);
+    }
+}
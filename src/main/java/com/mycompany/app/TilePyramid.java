@@ -0,0 +1,266 @@
+package com.mycompany.app;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Renders every property as a colored point into a standard z/x/y pyramid of 256 px PNG tiles on
+// disk, so the map can show the whole dataset as a tiled layer instead of live graphics when zoomed
+// out. A manifest keeps a hash of what went into each tile; regenerating only renders tiles whose
+// points, colors or size changed, and deletes tiles that no longer have any points.
+//
+// Can be run on its own: TilePyramid <csv file> [output directory]
+public class TilePyramid {
+    public static final int MIN_ZOOM = 10;
+    public static final int MAX_ZOOM = 15;
+    private static final String MANIFEST_FILE = "manifest.properties";
+
+    // Same size as the live graphics: 15 px symbols at the map's 1:10,000 reference scale
+    private static final double SYMBOL_SIZE = 15;
+    private static final double REFERENCE_SCALE = 10000;
+    private static final double MIN_SYMBOL_SIZE = 1.5;
+
+    // Instance variables:
+    private final Path directory;
+    private final AtomicInteger tilesRendered = new AtomicInteger();
+    private final AtomicInteger tilesUnchanged = new AtomicInteger();
+    private int tilesRemoved;
+
+    // Constructor:
+    public TilePyramid(Path directory) {
+        this.directory = directory;
+    }
+
+    // Getters:
+    public Path getDirectory() {return directory;}
+    public int getTilesRendered() {return tilesRendered.get();}
+    public int getTilesUnchanged() {return tilesUnchanged.get();}
+    public int getTilesRemoved() {return tilesRemoved;}
+
+    // URL template for a web tiled layer reading these tiles
+    public String getUrlTemplate() {
+        return directory.toAbsolutePath().toUri() + "{level}/{col}/{row}.png";
+    }
+
+    // Methods:
+    // Brings the tiles on disk up to date with the properties, colored around center. Tiles are
+    // rendered in parallel. Returns false if cancelled; the manifest is then left as it was, so the
+    // next run re-checks every tile.
+    public boolean generate(PropertyColumns columns, long center, BooleanSupplier cancelled) throws IOException {
+        try (Metrics.Span span = Metrics.start(Metrics.Phase.TILE_RENDERING)) {
+            Properties oldManifest = readManifest();
+            Map<String, String> newManifest = new ConcurrentHashMap<>();
+            tilesRendered.set(0);
+            tilesUnchanged.set(0);
+            tilesRemoved = 0;
+
+            for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+                if (!generateZoom(columns, center, zoom, oldManifest, newManifest, cancelled)) {
+                    return false;
+                }
+            }
+
+            // Tiles that lost all their points
+            for (String tile : oldManifest.stringPropertyNames()) {
+                if (!newManifest.containsKey(tile)) {
+                    Files.deleteIfExists(directory.resolve(tile + ".png"));
+                    tilesRemoved++;
+                }
+            }
+
+            writeManifest(newManifest);
+            span.setItems(tilesRendered.get());
+            Metrics.count("tiles.rendered", tilesRendered.get());
+            Metrics.count("tiles.unchanged", tilesUnchanged.get());
+            Metrics.count("tiles.removed", tilesRemoved);
+            return true;
+        }
+    }
+
+    private boolean generateZoom(PropertyColumns columns, long center, int zoom, Properties oldManifest,
+                                 Map<String, String> newManifest, BooleanSupplier cancelled) {
+        double resolution = WebMercator.resolution(zoom);
+        double radius = symbolSize(zoom) / 2;
+
+        // Tile key in the high 32 bits and row in the low 32, one entry per tile a point's symbol
+        // touches; sorting groups each tile's points together, in row (drawing) order
+        long[] keys = new long[columns.size() * 4];
+        int keyCount = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            if (!columns.hasLocation(row)) {
+                continue;
+            }
+            double pixelX = pixelX(columns.getX(row), resolution);
+            double pixelY = pixelY(columns.getY(row), resolution);
+            for (long tileY = tileOf(pixelY - radius); tileY <= tileOf(pixelY + radius); tileY++) {
+                for (long tileX = tileOf(pixelX - radius); tileX <= tileOf(pixelX + radius); tileX++) {
+                    keys[keyCount++] = ((tileY << zoom | tileX) << 32) | row;
+                }
+            }
+        }
+        Arrays.sort(keys, 0, keyCount);
+
+        List<int[]> tileRanges = new ArrayList<>();
+        for (int start = 0, end; start < keyCount; start = end) {
+            end = start;
+            while (end < keyCount && keys[end] >>> 32 == keys[start] >>> 32) {
+                end++;
+            }
+            tileRanges.add(new int[]{start, end});
+        }
+
+        IntStream.range(0, tileRanges.size()).parallel().forEach(i -> {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            int[] range = tileRanges.get(i);
+            long tileKey = keys[range[0]] >>> 32;
+            int tileX = (int) (tileKey & ((1L << zoom) - 1));
+            int tileY = (int) (tileKey >>> zoom);
+            String tile = zoom + "/" + tileX + "/" + tileY;
+
+            int[] rows = new int[range[1] - range[0]];
+            for (int k = 0; k < rows.length; k++) {
+                rows[k] = (int) keys[range[0] + k];
+            }
+
+            String hash = Long.toHexString(tileHash(columns, center, zoom, rows));
+            newManifest.put(tile, hash);
+            if (hash.equals(oldManifest.getProperty(tile)) && Files.exists(directory.resolve(tile + ".png"))) {
+                tilesUnchanged.incrementAndGet();
+                return;
+            }
+
+            try {
+                renderTile(columns, center, zoom, tileX, tileY, rows, directory.resolve(tile + ".png"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            tilesRendered.incrementAndGet();
+        });
+
+        return !cancelled.getAsBoolean();
+    }
+
+    private void renderTile(PropertyColumns columns, long center, int zoom, int tileX, int tileY, int[] rows, Path file) throws IOException {
+        double resolution = WebMercator.resolution(zoom);
+        double size = symbolSize(zoom);
+        double originX = (double) tileX * WebMercator.TILE_SIZE;
+        double originY = (double) tileY * WebMercator.TILE_SIZE;
+
+        BufferedImage image = new BufferedImage(WebMercator.TILE_SIZE, WebMercator.TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        Color[] classColors = new Color[AssessmentColorScale.getClassCount()];
+        for (int i = 0; i < classColors.length; i++) {
+            classColors[i] = Color.decode(AssessmentColorScale.CLASS_COLORS[i]);
+        }
+
+        Ellipse2D.Double symbol = new Ellipse2D.Double(0, 0, size, size);
+        for (int row : rows) {
+            symbol.x = pixelX(columns.getX(row), resolution) - originX - size / 2;
+            symbol.y = pixelY(columns.getY(row), resolution) - originY - size / 2;
+            graphics.setColor(classColors[AssessmentColorScale.classOf(columns.getAssessedValue(row), center)]);
+            graphics.fill(symbol);
+        }
+        graphics.dispose();
+
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    // Everything that decides how the tile looks: each point's position, in order, and color class,
+    // plus the symbol size and palette
+    private static long tileHash(PropertyColumns columns, long center, int zoom, int[] rows) {
+        long hash = mix(Double.doubleToLongBits(symbolSize(zoom)) ^ Arrays.hashCode(AssessmentColorScale.CLASS_COLORS));
+        for (int row : rows) {
+            hash = hash * 31 + mix(Double.doubleToLongBits(columns.getX(row)));
+            hash = hash * 31 + mix(Double.doubleToLongBits(columns.getY(row)));
+            hash = hash * 31 + AssessmentColorScale.classOf(columns.getAssessedValue(row), center);
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer, so nearby coordinates give unrelated hashes
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static double symbolSize(int zoom) {
+        return Math.max(MIN_SYMBOL_SIZE, SYMBOL_SIZE * REFERENCE_SCALE / WebMercator.scaleForZoom(zoom));
+    }
+
+    // Pixel position at a zoom level, from the top left of the world
+    private static double pixelX(double x, double resolution) {
+        return (x + WebMercator.ORIGIN_SHIFT) / resolution;
+    }
+
+    private static double pixelY(double y, double resolution) {
+        return (WebMercator.ORIGIN_SHIFT - y) / resolution;
+    }
+
+    private static long tileOf(double pixel) {
+        return (long) Math.floor(pixel / WebMercator.TILE_SIZE);
+    }
+
+    private Properties readManifest() throws IOException {
+        Properties manifest = new Properties();
+        Path file = directory.resolve(MANIFEST_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    // Written to a temporary file first so an interrupted run can't leave a half-written manifest
+    private void writeManifest(Map<String, String> entries) throws IOException {
+        Properties manifest = new Properties();
+        manifest.putAll(entries);
+
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(MANIFEST_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            manifest.store(out, "Tile hashes");
+        }
+        Files.move(temporary, directory.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TilePyramid <csv file> [output directory]");
+            System.exit(1);
+        }
+
+        PropertyAssessments properties = new PropertyAssessments(args[0]);
+        TilePyramid pyramid = new TilePyramid(Path.of(args.length > 1 ? args[1] : "tiles"));
+
+        long startTime = System.nanoTime();
+        pyramid.generate(properties.getColumns(), properties.getMedian(), () -> false);
+        System.out.printf("Rendered %d tiles, %d unchanged, %d removed in %.1f s%n",
+                pyramid.getTilesRendered(), pyramid.getTilesUnchanged(), pyramid.getTilesRemoved(), (System.nanoTime() - startTime) / 1e9);
+    }
+}
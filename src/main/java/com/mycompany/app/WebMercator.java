@@ -0,0 +1,54 @@
+package com.mycompany.app;
+
+// Spherical Web Mercator (EPSG:3857), the spatial reference of the basemap, and the standard web
+// map zoom levels defined on it
+public class WebMercator {
+    public static final double EARTH_RADIUS = 6378137;
+
+    // Half the width of the projected world; tile x/y count from (-ORIGIN_SHIFT, ORIGIN_SHIFT), the top left
+    public static final double ORIGIN_SHIFT = Math.PI * EARTH_RADIUS;
+    public static final int TILE_SIZE = 256;
+
+    // Ground resolution at zoom 0, in meters per pixel of a 256 pixel tile
+    public static final double ZOOM_0_RESOLUTION = 156543.03392804097;
+
+    private static final double SCREEN_DPI = 96;
+    private static final double METERS_PER_INCH = 0.0254;
+
+    // Methods:
+    public static double x(double lng) {
+        return Math.toRadians(lng) * EARTH_RADIUS;
+    }
+
+    public static double y(double lat) {
+        return Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lat) / 2)) * EARTH_RADIUS;
+    }
+
+    public static double lng(double x) {
+        return Math.toDegrees(x / EARTH_RADIUS);
+    }
+
+    public static double lat(double y) {
+        return Math.toDegrees(2 * Math.atan(Math.exp(y / EARTH_RADIUS)) - Math.PI / 2);
+    }
+
+    // Mercator stretches everything by 1 / cos(latitude), so a distance on the ground at lat covers
+    // this many projected units
+    public static double projectedDistance(double meters, double lat) {
+        return meters / Math.cos(Math.toRadians(lat));
+    }
+
+    public static double resolution(int zoom) {
+        return ZOOM_0_RESOLUTION / Math.pow(2, zoom);
+    }
+
+    public static double scaleForZoom(double zoom) {
+        return ZOOM_0_RESOLUTION / Math.pow(2, zoom) * SCREEN_DPI / METERS_PER_INCH;
+    }
+
+    // Zoom level that corresponds to a map scale (1:scale)
+    public static int zoomForScale(double scale) {
+        double metersPerPixel = scale * METERS_PER_INCH / SCREEN_DPI;
+        return (int) Math.round(Math.log(ZOOM_0_RESOLUTION / metersPerPixel) / Math.log(2));
+    }
+}
@@ -0,0 +1,59 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChannelWriterTest {
+    private static final String HOUSE = "\uD83C\uDFE0"; // U+1F3E0, outside the Basic Multilingual Plane
+
+    @Test
+    void supplementaryCharacterWrittenOneCharAtATime() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes), 16)) {
+            String text = "10 " + HOUSE + " Street";
+            for (int i = 0; i < text.length(); i++) {
+                writer.write(text.charAt(i));
+            }
+        }
+        assertEquals("10 " + HOUSE + " Street", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void supplementaryCharacterThroughJsonWriter() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes), 4)) {
+            new JsonWriter(writer).beginObject().name("address").value(HOUSE + HOUSE + " Avenue").endObject();
+        }
+        assertEquals("{\"address\":\"" + HOUSE + HOUSE + " Avenue\"}", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void pairSplitAcrossStringWrites() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes), 64)) {
+            writer.write("a" + HOUSE.charAt(0));
+            writer.write(HOUSE.charAt(1) + "b");
+        }
+        assertEquals("a" + HOUSE + "b", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void unpairedSurrogatesAreRejected() {
+        ChannelWriter loneLow = new ChannelWriter(Channels.newChannel(new ByteArrayOutputStream()), 64);
+        assertThrows(MalformedInputException.class, () -> loneLow.write("a" + HOUSE.charAt(1)));
+
+        ChannelWriter unfinished = new ChannelWriter(Channels.newChannel(new ByteArrayOutputStream()), 64);
+        assertThrows(MalformedInputException.class, () -> {
+            unfinished.write("a" + HOUSE.charAt(0));
+            unfinished.close();
+        });
+    }
+}
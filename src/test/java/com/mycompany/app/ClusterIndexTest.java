@@ -0,0 +1,74 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterIndexTest {
+    // Four units in one building, one house a degree away and one property with no location
+    private final PropertyColumns columns = new PropertyColumns(List.of(
+            TestProperties.property(1, 400000, 53.54, -113.49),
+            TestProperties.property(2, 100000, 53.54, -113.49),
+            TestProperties.property(3, 300000, 53.54, -113.49),
+            TestProperties.property(4, 200000, 53.54, -113.49),
+            TestProperties.property(5, 700000, 54.54, -113.49),
+            TestProperties.property(6, 900000, -1, -1)));
+    private final int[] allRows = IntStream.range(0, columns.size()).toArray();
+
+    @Test
+    void clustersCountLocatedRowsWithTheirMedian() {
+        ClusterIndex index = ClusterIndex.build(columns, allRows, () -> false);
+
+        for (int zoom = ClusterIndex.MIN_CLUSTER_ZOOM; zoom <= ClusterIndex.MAX_CLUSTER_ZOOM; zoom++) {
+            ClusterIndex.ClusterLevel level = index.getLevel(zoom);
+            assertEquals(zoom, level.getZoom());
+            assertEquals(2, level.size());
+
+            int building = level.getCount(0) == 4 ? 0 : 1;
+            assertEquals(4, level.getCount(building));
+            assertEquals(250000, level.getMedianValue(building)); // Between 200000 and 300000
+            assertEquals(columns.getX(0), level.getX(building), 1e-6);
+            assertEquals(columns.getY(0), level.getY(building), 1e-6);
+            assertEquals(1, level.getCount(1 - building));
+            assertEquals(700000, level.getMedianValue(1 - building));
+        }
+    }
+
+    @Test
+    void onlyTheGivenRowsAreClustered() {
+        ClusterIndex index = ClusterIndex.build(columns, new int[]{1, 2, 3}, () -> false);
+        ClusterIndex.ClusterLevel level = index.getLevel(ClusterIndex.MAX_CLUSTER_ZOOM);
+
+        assertEquals(1, level.size());
+        assertEquals(3, level.getCount(0));
+        assertEquals(200000, level.getMedianValue(0));
+    }
+
+    @Test
+    void zoomsOutsideTheClusterRangeUseTheNearestLevel() {
+        ClusterIndex index = ClusterIndex.build(columns, allRows, () -> false);
+
+        assertSame(index.getLevel(ClusterIndex.MIN_CLUSTER_ZOOM), index.getLevel(2));
+        assertSame(index.getLevel(ClusterIndex.MAX_CLUSTER_ZOOM), index.getLevel(19));
+        assertTrue(ClusterIndex.isClustered(ClusterIndex.MAX_CLUSTER_ZOOM));
+        assertFalse(ClusterIndex.isClustered(ClusterIndex.MAX_CLUSTER_ZOOM + 1));
+    }
+
+    @Test
+    void emptyRowsGiveEmptyLevels() {
+        ClusterIndex index = ClusterIndex.build(columns, new int[0], () -> false);
+        assertEquals(0, index.getLevel(ClusterIndex.MIN_CLUSTER_ZOOM).size());
+    }
+
+    @Test
+    void cancelledBuildReturnsNull() {
+        assertNull(ClusterIndex.build(columns, allRows, () -> true));
+    }
+}
@@ -0,0 +1,62 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetExportTest {
+    private final DatasetSnapshot snapshot = new DatasetSnapshot(1, List.of(
+            TestProperties.property(1, 250000, 53.54, -113.49),
+            TestProperties.property(2, 410000, 53.55, -113.50)));
+
+    @Test
+    void writesEveryRow() throws IOException {
+        Path directory = Files.createTempDirectory("export");
+        Path file = directory.resolve("shown.csv");
+        BitSet rows = new BitSet();
+        rows.set(0, 2);
+
+        assertTrue(new DatasetExport(snapshot, DatasetExport.Format.CSV).write(file, rows, () -> false, (done, total) -> { }));
+        assertEquals(3, Files.readAllLines(file).size()); // Header and two rows
+        assertEquals(List.of(file), list(directory));
+    }
+
+    @Test
+    void cancelledExportLeavesNoFile() throws IOException {
+        Path directory = Files.createTempDirectory("export");
+        BitSet rows = new BitSet();
+        rows.set(0, 2);
+
+        assertFalse(new DatasetExport(snapshot, DatasetExport.Format.GEOJSON).write(directory.resolve("shown.geojson"), rows, () -> true, (done, total) -> { }));
+        assertEquals(List.of(), list(directory));
+    }
+
+    @Test
+    void failedExportLeavesNoFile() throws IOException {
+        Path directory = Files.createTempDirectory("export");
+        BitSet rows = new BitSet();
+        rows.set(0, 2);
+
+        DatasetExport export = new DatasetExport(snapshot, DatasetExport.Format.CSV);
+        assertThrows(IllegalStateException.class, () -> export.write(directory.resolve("shown.csv"), rows, () -> false, (done, total) -> {
+            throw new IllegalStateException("progress listener failed");
+        }));
+        assertEquals(List.of(), list(directory));
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterExpressionTest {
+    // One OLIVER property among nine DOWNTOWN ones; values 100000, 200000, ... 1000000
+    private final DatasetSnapshot snapshot = snapshot();
+    private final ColumnStatistics statistics = snapshot.getColumnStatistics();
+
+    private static DatasetSnapshot snapshot() {
+        List<PropertyAssessment> properties = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            properties.add(TestProperties.property(i, i * 100000L, 53.54 + i * 0.001, -113.49,
+                    i == 3 ? "OLIVER" : "DOWNTOWN", "O-day'min Ward", "RESIDENTIAL", i % 2 == 0 ? "Y" : "N"));
+        }
+        return new DatasetSnapshot(1, properties);
+    }
+
+    private static void assertParseError(String spec, String message) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> FilterExpression.parse(spec));
+        assertTrue(error.getMessage().startsWith(message), error.getMessage());
+    }
+
+    private int count(String spec) {
+        return snapshot.filter(FilterExpression.parse(spec)).size();
+    }
+
+    @Test
+    void badSpecsAreRejected() {
+        assertParseError("ward = X extra", "Unexpected 'e'");
+        assertParseError("(ward = X", "Expected ')'");
+        assertParseError("value > lots", "Expected a whole number for value, got 'lots'");
+        assertParseError("value ~ 5", "Operator ~ can't be used on value");
+        assertParseError("ward < X", "Operator < can't be used on ward");
+        assertParseError("color = red", "Unknown field 'color'");
+        assertParseError("= X", "Expected a field name");
+        assertParseError("ward X", "Expected an operator");
+        assertParseError("ward = \"Ward 7", "Unterminated quote");
+        assertParseError("ward =", "Expected a value");
+        assertParseError("ward = X and", "Expected a field name");
+    }
+
+    @Test
+    void errorsGiveThePosition() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> FilterExpression.parse("ward = X extra"));
+        assertEquals("Unexpected 'e' at position 9 in filter: ward = X extra", error.getMessage());
+    }
+
+    @Test
+    void keywordsMustStandAlone() {
+        FilterExpression expression = FilterExpression.parse("neighborhood = ORCHARDS");
+        assertInstanceOf(FilterExpression.Categorical.class, expression);
+        assertEquals("ORCHARDS", ((FilterExpression.Categorical) expression).getValue());
+    }
+
+    @Test
+    void emptyAndAllKeepEverything() {
+        assertEquals(10, count(""));
+        assertEquals(10, count(" ALL "));
+    }
+
+    @Test
+    void rangeOperatorsIncludeOrExcludeTheBound() {
+        assertEquals(4, count("value < 500000"));
+        assertEquals(5, count("value <= 500000"));
+        assertEquals(5, count("value > 500000"));
+        assertEquals(6, count("value >= 500000"));
+        assertEquals(1, count("value = 500000"));
+        assertEquals(0, count("value = 500001"));
+        assertEquals(10, count("value >= 100000 and value <= 1000000"));
+    }
+
+    @Test
+    void rangesAtTheEndsOfLongDoNotWrap() {
+        assertEquals(0, count("value < " + Long.MIN_VALUE));
+        assertEquals(0, count("value > " + Long.MAX_VALUE));
+        assertEquals(10, count("value <= " + Long.MAX_VALUE));
+        assertEquals(10, count("value >= " + Long.MIN_VALUE));
+
+        FilterExpression.ValueRange below = (FilterExpression.ValueRange) FilterExpression.valueBelow(Long.MIN_VALUE);
+        assertTrue(below.getMinValue() > below.getMaxValue());
+        FilterExpression.ValueRange above = (FilterExpression.ValueRange) FilterExpression.valueAbove(Long.MAX_VALUE);
+        assertTrue(above.getMinValue() > above.getMaxValue());
+    }
+
+    @Test
+    void andPutsTheMostSelectiveChildFirst() {
+        FilterExpression downtown = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "DOWNTOWN");
+        FilterExpression oliver = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "OLIVER");
+        FilterExpression.And plan = (FilterExpression.And) FilterExpression.and(downtown, oliver).plan(statistics);
+
+        assertSame(oliver, plan.getChildren().get(0));
+        assertSame(downtown, plan.getChildren().get(1));
+        // The first indexed child picks the candidate rows
+        assertEquals(1, plan.candidateRows(statistics).length);
+    }
+
+    @Test
+    void orPutsTheLeastSelectiveChildFirst() {
+        FilterExpression downtown = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "DOWNTOWN");
+        FilterExpression oliver = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "OLIVER");
+        FilterExpression.Or plan = (FilterExpression.Or) FilterExpression.or(oliver, downtown).plan(statistics);
+
+        assertSame(downtown, plan.getChildren().get(0));
+        assertSame(oliver, plan.getChildren().get(1));
+        assertEquals(10, plan.candidateRows(statistics).length);
+    }
+
+    @Test
+    void cheaperChildBreaksATie() {
+        FilterExpression contains = FilterExpression.textContains(FilterExpression.Field.NEIGHBORHOOD, "oliver");
+        FilterExpression equal = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "OLIVER");
+        FilterExpression.And plan = (FilterExpression.And) FilterExpression.and(contains, equal).plan(statistics);
+
+        assertEquals(contains.estimateSelectivity(statistics), equal.estimateSelectivity(statistics));
+        assertSame(equal, plan.getChildren().get(0));
+    }
+
+    @Test
+    void notFlipsSelectivityAndPlansItsChild() {
+        FilterExpression downtown = FilterExpression.equalTo(FilterExpression.Field.NEIGHBORHOOD, "DOWNTOWN");
+        FilterExpression garage = FilterExpression.equalTo(FilterExpression.Field.GARAGE, "Y");
+        FilterExpression notDowntown = FilterExpression.not(downtown);
+
+        assertEquals(0.1, notDowntown.estimateSelectivity(statistics), 1e-9);
+        FilterExpression.And plan = (FilterExpression.And) FilterExpression.and(garage, notDowntown).plan(statistics);
+        assertInstanceOf(FilterExpression.Not.class, plan.getChildren().get(0));
+
+        FilterExpression.Not plannedNot = (FilterExpression.Not) FilterExpression.not(FilterExpression.and(downtown, garage)).plan(statistics);
+        assertSame(garage, ((FilterExpression.And) plannedNot.getChild()).getChildren().get(0));
+        // Not has no index, so every row is tested
+        assertNull(plannedNot.candidateRows(statistics));
+    }
+
+    @Test
+    void polygonAwayFromEveryPropertyIsPlannedFirst() {
+        SelectionPolygon elsewhere = new SelectionPolygon();
+        elsewhere.addRing(new double[]{-100, -99, -99}, new double[]{40, 40, 41});
+        FilterExpression garage = FilterExpression.equalTo(FilterExpression.Field.GARAGE, "Y");
+        FilterExpression within = FilterExpression.within(elsewhere);
+
+        assertEquals(0.0, within.estimateSelectivity(statistics));
+        FilterExpression.And plan = (FilterExpression.And) FilterExpression.and(garage, within).plan(statistics);
+        assertSame(within, plan.getChildren().get(0));
+        assertEquals(0, snapshot.filter(plan).size());
+    }
+
+    @Test
+    void plannedFilterMatchesTestingEveryRow() {
+        for (String spec : List.of("garage = y and value > 300000", "not neighborhood = OLIVER or value < 200000",
+                "(garage = N or neighborhood ~ oliv) and not value >= 900000", "class = RESIDENTIAL and address ~ jasper")) {
+            FilterExpression expression = FilterExpression.parse(spec);
+            long expected = snapshot.getProperties().stream().filter(expression::test).count();
+            assertEquals(expected, snapshot.filter(expression).size(), spec);
+            assertTrue(expected > 0, spec);
+        }
+    }
+}
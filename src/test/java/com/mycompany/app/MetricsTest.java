@@ -0,0 +1,37 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+    @Test
+    void summaryIncludesSectionsAsTheyAreNow() {
+        int[] reads = {0};
+        Metrics.addSection("Test section", () -> "read " + (++reads[0]));
+
+        String first = Metrics.summary();
+        assertTrue(first.contains("Test section"));
+        assertTrue(first.contains("read 1"));
+        assertTrue(Metrics.summary().contains("read 2"));
+    }
+
+    @Test
+    void laterSectionReplacesEarlierOne() {
+        Metrics.addSection("Replaced section", () -> "old value");
+        Metrics.addSection("Replaced section", () -> "new value");
+
+        String summary = Metrics.summary();
+        assertTrue(summary.contains("new value"));
+        assertFalse(summary.contains("old value"));
+    }
+
+    @Test
+    void countersAddUp() {
+        Metrics.count("test.counter", 2);
+        Metrics.count("test.counter", 3);
+        assertEquals(5, Metrics.getCount("test.counter"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryServiceTest {
+    @Test
+    void streamsMatchesUpToTheLimit() throws IOException {
+        try (Server server = new Server()) {
+            assertEquals(200, server.status("/properties?limit=2"));
+            assertEquals(2, count(server.body, "\"accountID\""));
+            assertEquals(200, server.status("/properties?filter=value%20%3E%3D%20400000"));
+            assertEquals(1, count(server.body, "\"accountID\""));
+        }
+    }
+
+    @Test
+    void badRequestsGet400() throws IOException {
+        try (Server server = new Server()) {
+            assertEquals(400, server.status("/properties?limit=-1"));
+            assertEquals(400, server.status("/properties?filter=nonsense"));
+            assertEquals(400, server.status("/accounts/abc"));
+        }
+    }
+
+    @Test
+    void failuresGet500() throws IOException {
+        try (Server server = new Server()) {
+            // Account 9 has no address, so writing it fails
+            assertEquals(500, server.status("/accounts/9"));
+            assertTrue(server.body.contains("\"error\""));
+        }
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int at = text.indexOf(part); at >= 0; at = text.indexOf(part, at + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    // A service on a free port over a few hand-made properties
+    private static class Server implements AutoCloseable {
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final QueryService service;
+        private String body;
+
+        Server() throws IOException {
+            PropertyAssessment broken = new PropertyAssessment(9, null, "N",
+                    new Neighborhood(1090, "DOWNTOWN", "O-day'min Ward"), 100000,
+                    new Location(53.56, -113.51, "POINT (-113.51 53.56)"),
+                    new AssessmentClass(100, -1, -1, "RESIDENTIAL", "", ""));
+            service = new QueryService(new PropertyAssessments(List.of(
+                    TestProperties.property(1, 250000, 53.54, -113.49),
+                    TestProperties.property(2, 410000, 53.55, -113.50),
+                    TestProperties.property(3, 330000, 53.57, -113.52),
+                    broken)), executor);
+            service.start(0);
+        }
+
+        int status(String path) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + service.getPort() + path).openConnection();
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                body = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            return status;
+        }
+
+        @Override
+        public void close() {
+            service.stop();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mycompany.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialIndexTest {
+    @Test
+    void queryMatchesBruteForce() {
+        Random random = new Random(7);
+        double[] xs = new double[2000];
+        double[] ys = new double[2000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble() * 10;
+            ys[i] = random.nextDouble() * 10;
+        }
+        xs[5] = Double.NaN; // Missing locations aren't indexed
+        SpatialIndex index = new SpatialIndex(xs, ys);
+
+        int[] expected = IntStream.range(0, xs.length)
+                .filter(i -> xs[i] >= 2 && xs[i] <= 4.5 && ys[i] >= 3 && ys[i] <= 7)
+                .toArray();
+        assertEquals(xs.length - 1, index.size());
+        assertArrayEquals(expected, index.queryEnvelope(2, 3, 4.5, 7));
+    }
+
+    @Test
+    void cellCountIsAnUpperBound() {
+        Random random = new Random(11);
+        double[] xs = new double[5000];
+        double[] ys = new double[5000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble();
+            ys[i] = random.nextDouble();
+        }
+        SpatialIndex index = new SpatialIndex(xs, ys);
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble(), y = random.nextDouble();
+            double width = random.nextDouble() * 0.3, height = random.nextDouble() * 0.3;
+            int exact = index.queryEnvelope(x, y, x + width, y + height).length;
+            assertTrue(index.countInEnvelopeCells(x, y, x + width, y + height) >= exact);
+        }
+        assertEquals(xs.length, index.countInEnvelopeCells(-1, -1, 2, 2));
+        assertEquals(0, index.countInEnvelopeCells(3, 3, 4, 4));
+    }
+
+    @Test
+    void cancelledPolygonSearchStopsEarly() {
+        DatasetSnapshot snapshot = new DatasetSnapshot(1, List.of(
+                TestProperties.property(1, 250000, 53.54, -113.49),
+                TestProperties.property(2, 410000, 53.55, -113.50),
+                TestProperties.property(3, 330000, 53.70, -113.20)));
+        SelectionPolygon polygon = new SelectionPolygon();
+        polygon.addRing(new double[]{-113.6, -113.4, -113.4, -113.6}, new double[]{53.5, 53.5, 53.6, 53.6});
+
+        assertEquals(2, snapshot.getPropertiesInPolygon(polygon).size());
+        assertEquals(0, snapshot.getPropertiesInPolygon(polygon, () -> true).size());
+    }
+}
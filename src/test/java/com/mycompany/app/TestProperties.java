@@ -0,0 +1,22 @@
+package com.mycompany.app;
+
+// Small hand-made properties for tests
+final class TestProperties {
+    private TestProperties() {
+    }
+
+    static PropertyAssessment property(int accountID, long assessedValue, double lat, double lng) {
+        return property(accountID, assessedValue, lat, lng, "DOWNTOWN", "O-day'min Ward", "RESIDENTIAL", "Y");
+    }
+
+    static PropertyAssessment property(int accountID, long assessedValue, double lat, double lng,
+                                       String neighborhood, String ward, String assessmentClass, String garage) {
+        return new PropertyAssessment(accountID,
+                new Address(-1, 100 + accountID, "JASPER AVENUE NW"),
+                garage,
+                new Neighborhood(1090, neighborhood, ward),
+                assessedValue,
+                new Location(lat, lng, "POINT (" + lng + " " + lat + ")"),
+                new AssessmentClass(100, -1, -1, assessmentClass, "", ""));
+    }
+}